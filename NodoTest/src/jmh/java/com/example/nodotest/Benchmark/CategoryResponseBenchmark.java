@@ -0,0 +1,66 @@
+package com.example.nodotest.Benchmark;
+
+import com.example.nodotest.Dto.Response.CategoryResponse;
+import com.example.nodotest.Entity.Category;
+import com.example.nodotest.Entity.CategoryImage;
+import com.example.nodotest.Mapper.CategoryImageMapperImpl;
+import com.example.nodotest.Mapper.CategoryMapper;
+import com.example.nodotest.Mapper.CategoryMapperImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CategoryMapper.toCategoryResponseList (kèm ảnh của từng category) như API danh sách category.
+ * Dữ liệu giả lập: mỗi category 0–10 ảnh.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CategoryResponseBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int categoryCount;
+
+    private CategoryMapper categoryMapper;
+    private List<Category> categories;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // MapStruct (componentModel = spring) inject mapper con qua field => gán tay khi không có Spring context
+        CategoryMapperImpl mapper = new CategoryMapperImpl();
+        ReflectionTestUtils.setField(mapper, "categoryImageMapper", new CategoryImageMapperImpl());
+        categoryMapper = mapper;
+
+        Random random = new Random(42);
+        Date today = new Date(System.currentTimeMillis());
+        categories = new ArrayList<>(categoryCount);
+        long imageId = 1;
+        for (long id = 1; id <= categoryCount; id++) {
+            Category category = new Category(id, "Danh mục " + id, "CAT" + id, "Mô tả danh mục " + id, "1",
+                    today, today, "admin", "admin", null);
+            int imageCount = random.nextInt(11);
+            for (int i = 0; i < imageCount; i++) {
+                String uuid = UUID.randomUUID().toString();
+                category.addImage(new CategoryImage(imageId++, category, "image-" + i + ".jpg",
+                        "src/main/resources/images/categories/" + uuid + ".jpg", uuid, "1",
+                        today, today, "admin", "admin"));
+            }
+            categories.add(category);
+        }
+    }
+
+    @Benchmark
+    public List<CategoryResponse> toCategoryResponseList() {
+        return categoryMapper.toCategoryResponseList(categories);
+    }
+}
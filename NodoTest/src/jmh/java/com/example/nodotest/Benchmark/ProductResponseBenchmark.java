@@ -0,0 +1,144 @@
+package com.example.nodotest.Benchmark;
+
+import com.example.nodotest.Dto.Projection.ProductSearchRow;
+import com.example.nodotest.Dto.Response.ProductResponse;
+import com.example.nodotest.Entity.Category;
+import com.example.nodotest.Entity.Product;
+import com.example.nodotest.Entity.ProductCategory;
+import com.example.nodotest.Entity.ProductCategoryKey;
+import com.example.nodotest.Entity.ProductImage;
+import com.example.nodotest.Mapper.ProductImageMapperImpl;
+import com.example.nodotest.Mapper.ProductMapperImpl;
+import com.example.nodotest.Mapper.ProductResponseAssembler;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dựng ProductResponse cho 1 trang kết quả /api/product/search:
+ * - fromEntities: ProductMapper.toResponse + joining tên category + ProductImageMapper.toResponses, 2 lần groupingBy
+ * - fromSearchRows: gom các dòng projection (product x category x image) như hydrateProductResponses
+ * Dữ liệu giả lập: mỗi product 1–5 category (trong 200 category), 0–10 ảnh.
+ * Chạy: mvn -Pjmh test-compile exec:exec (thêm -Djmh.prof="-prof gc" để xem allocation / op)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductResponseBenchmark {
+
+    private static final int CATEGORY_POOL = 200;
+
+    @Param({"100", "1000", "10000"})
+    public int productCount;
+
+    private ProductResponseAssembler assembler;
+
+    private List<Product> products;
+    private List<ProductCategory> productCategories;
+    private List<ProductImage> productImages;
+
+    private List<Long> productIds;
+    private List<ProductSearchRow> rows;
+    private Map<Long, String> categoryNames;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        assembler = new ProductResponseAssembler(new ProductMapperImpl(), new ProductImageMapperImpl());
+
+        Random random = new Random(42);
+        Date today = new Date(System.currentTimeMillis());
+
+        List<Category> categories = new ArrayList<>(CATEGORY_POOL);
+        categoryNames = new HashMap<>();
+        for (long id = 1; id <= CATEGORY_POOL; id++) {
+            Category category = new Category(id, "Danh mục " + id, "CAT" + id, "Mô tả " + id, "1",
+                    today, today, "admin", "admin", null);
+            categories.add(category);
+            categoryNames.put(id, category.getName());
+        }
+
+        products = new ArrayList<>(productCount);
+        productCategories = new ArrayList<>();
+        productImages = new ArrayList<>();
+        productIds = new ArrayList<>(productCount);
+        rows = new ArrayList<>();
+        long imageId = 1;
+
+        for (long id = 1; id <= productCount; id++) {
+            Product product = new Product();
+            product.setId(id);
+            product.setName("Sản phẩm " + id);
+            product.setDescription("Mô tả sản phẩm " + id);
+            product.setPrice(10_000d + random.nextInt(1_000_000));
+            product.setProductCode("P" + id);
+            product.setQuantity((long) random.nextInt(500));
+            product.setStatus("1");
+            product.setCreatedDate(today);
+            product.setModifiedDate(today);
+            products.add(product);
+            productIds.add(id);
+
+            List<Category> picked = new ArrayList<>();
+            int categoryCount = 1 + random.nextInt(5);
+            for (int i = 0; i < categoryCount; i++) {
+                Category category = categories.get(random.nextInt(CATEGORY_POOL));
+                if (!picked.contains(category)) {
+                    picked.add(category);
+                    productCategories.add(new ProductCategory(
+                            new ProductCategoryKey(id, category.getId()), product, category, today, today));
+                }
+            }
+
+            List<ProductImage> images = new ArrayList<>();
+            int imageCount = random.nextInt(11);
+            for (int i = 0; i < imageCount; i++) {
+                String uuid = UUID.randomUUID().toString();
+                images.add(new ProductImage(imageId++, product, "image-" + i + ".jpg",
+                        "src/main/resources/images/product/" + uuid + ".jpg", uuid, "1",
+                        today, today, "admin", "admin"));
+            }
+            productImages.addAll(images);
+
+            // Left join nhân bản: mỗi category x mỗi ảnh (không có ảnh thì 1 dòng image null)
+            for (Category category : picked) {
+                if (images.isEmpty()) {
+                    rows.add(row(product, category.getId(), null));
+                }
+                for (ProductImage image : images) {
+                    rows.add(row(product, category.getId(), image));
+                }
+            }
+        }
+    }
+
+    private static ProductSearchRow row(Product product, Long categoryId, ProductImage image) {
+        return new ProductSearchRow(
+                product.getId(), product.getName(), product.getDescription(), product.getPrice(),
+                product.getProductCode(), product.getQuantity(), product.getStatus(),
+                product.getCreatedDate(), product.getModifiedDate(), categoryId,
+                image != null ? image.getName() : null,
+                image != null ? image.getUuid() : null,
+                image != null ? image.getStatus() : null
+        );
+    }
+
+    @Benchmark
+    public List<ProductResponse> fromEntities() {
+        return assembler.fromEntities(products, productCategories, productImages);
+    }
+
+    @Benchmark
+    public List<ProductResponse> fromSearchRows() {
+        return assembler.fromSearchRows(productIds, rows, categoryNames::get);
+    }
+}
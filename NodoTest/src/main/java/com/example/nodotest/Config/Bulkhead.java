@@ -0,0 +1,95 @@
+package com.example.nodotest.Config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Giới hạn số request chạy đồng thời của 1 nhóm endpoint (export / interactive) để nhóm này
+ * không chiếm hết thread Tomcat và connection DB của nhóm kia.
+ * Hết chỗ thì chờ tối đa maxWait (0 = từ chối ngay), quá thời gian thì request bị trả 429.
+ */
+public final class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final Duration maxWait;
+    private final long retryAfterSeconds;
+    private final Semaphore semaphore;
+    private final Counter rejected;
+
+    public Bulkhead(String name, int maxConcurrent, Duration maxWait, long retryAfterSeconds,
+                    MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWait = maxWait;
+        this.retryAfterSeconds = retryAfterSeconds;
+        // fair: request chờ lâu nhất được vào trước
+        this.semaphore = new Semaphore(maxConcurrent, true);
+
+        Gauge.builder("nodotest.bulkhead.active", semaphore, s -> maxConcurrent - s.availablePermits())
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder("nodotest.bulkhead.queued", semaphore, Semaphore::getQueueLength)
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder("nodotest.bulkhead.max", () -> maxConcurrent)
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("nodotest.bulkhead.rejected")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Lấy 1 chỗ, trả về permit để trả lại khi request xong (trả nhiều lần chỉ tính 1),
+     * hoặc null nếu hết chỗ sau maxWait.
+     */
+    public Permit tryAcquire() {
+        boolean acquired;
+        try {
+            acquired = maxWait.isZero()
+                    ? semaphore.tryAcquire()
+                    : semaphore.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment();
+            return null;
+        }
+        return new Permit();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.nodotest.Config;
+
+import com.example.nodotest.Exception.BulkheadFullException;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Giữ 1 chỗ của bulkhead trong suốt request. Request stream (StreamingResponseBody) chạy tiếp trên
+ * thread async sau khi handler trả về, nên chỗ chỉ được trả khi async context kết thúc.
+ */
+public class BulkheadInterceptor implements AsyncHandlerInterceptor {
+
+    private final Bulkhead bulkhead;
+    private final String permitAttribute;
+
+    public BulkheadInterceptor(Bulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+        this.permitAttribute = BulkheadInterceptor.class.getName() + "." + bulkhead.getName();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Dispatch async (sau khi stream xong) dùng lại chỗ đã lấy ở lần dispatch đầu
+        if (request.getDispatcherType() == DispatcherType.ASYNC || request.getAttribute(permitAttribute) != null) {
+            return true;
+        }
+        Bulkhead.Permit permit = bulkhead.tryAcquire();
+        if (permit == null) {
+            throw new BulkheadFullException(bulkhead.getName(), bulkhead.getRetryAfterSeconds());
+        }
+        request.setAttribute(permitAttribute, permit);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        Bulkhead.Permit permit = (Bulkhead.Permit) request.getAttribute(permitAttribute);
+        if (permit == null) {
+            return;
+        }
+        // Complete / timeout / lỗi / client ngắt kết nối đều kết thúc bằng onComplete
+        request.getAsyncContext().addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                permit.release();
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        // Request thường trả chỗ ở đây; request async thì chỉ trả sau khi async context xong
+        if (request.isAsyncStarted()) {
+            return;
+        }
+        Bulkhead.Permit permit = (Bulkhead.Permit) request.getAttribute(permitAttribute);
+        if (permit != null) {
+            permit.release();
+        }
+    }
+}
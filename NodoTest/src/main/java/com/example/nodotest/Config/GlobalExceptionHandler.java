@@ -2,6 +2,8 @@ package com.example.nodotest.Config;
 
 import com.example.nodotest.Dto.Response.ErrorResponse;
 import com.example.nodotest.Exception.*;
+import com.example.nodotest.Exception.ErrorExcel.InvalidDateRangeException;
+import com.example.nodotest.Exception.ErrorProduct.InvalidBulkDeleteRequestException;
 import com.example.nodotest.Exception.ErrorProduct.ProductCategoryNotFoundException;
 import com.example.nodotest.Exception.ErrorProduct.ProductCodeExistsException;
 import com.example.nodotest.Exception.ErrorProduct.ProductNotFoundException;
@@ -10,6 +12,7 @@ import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -46,6 +49,52 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
     }
 
+    // Xử lý exception ImageNotFoundException
+    @ExceptionHandler(ImageNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleImageNotFound(ImageNotFoundException ex, Locale locale) {
+        log.warn("ImageNotFoundException: {}", ex.getMessage());
+        String errorMessage = messageSource.getMessage("image.notfound", null, locale);
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new ErrorResponse(errorMessage));
+    }
+
+    // Khoảng ngày export không hợp lệ (startDate > endDate)
+    @ExceptionHandler(InvalidDateRangeException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidDateRange(InvalidDateRangeException ex) {
+        log.warn("InvalidDateRangeException: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ErrorResponse(ex.getMessage()));
+    }
+
+    // Xử lý exception ExportJobNotFoundException
+    @ExceptionHandler(ExportJobNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleExportJobNotFound(ExportJobNotFoundException ex, Locale locale) {
+        log.warn("ExportJobNotFoundException: {}", ex.getMessage());
+        String errorMessage = messageSource.getMessage("export.job.notfound", null, locale);
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new ErrorResponse(errorMessage));
+    }
+
+    // Quá số export job cho phép => 429, client thử lại sau
+    @ExceptionHandler(ExportLimitExceededException.class)
+    public ResponseEntity<ErrorResponse> handleExportLimitExceeded(ExportLimitExceededException ex, Locale locale) {
+        log.warn("ExportLimitExceededException: {}", ex.getMessage());
+        String errorMessage = messageSource.getMessage("error.export.limit", null, locale);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(new ErrorResponse(errorMessage));
+    }
+
+    // Nhóm endpoint đang đủ số request đồng thời (bulkhead) => 429, client thử lại sau
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<ErrorResponse> handleBulkheadFull(BulkheadFullException ex, Locale locale) {
+        log.warn("BulkheadFullException: {}", ex.getMessage());
+        String errorMessage = messageSource.getMessage("error.bulkhead." + ex.getBulkhead(), null, locale);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(new ErrorResponse(errorMessage));
+    }
+
     // Xử lý exception CategoryCodeExistsException
     @ExceptionHandler(CategoryCodeExistsException.class)
     public ResponseEntity<Object> handleCategoryCodeExistsException(CategoryCodeExistsException ex, Locale locale) {
@@ -106,6 +155,14 @@ public class GlobalExceptionHandler {
                 .body(new ErrorResponse(ex.getMessage()));
     }
 
+    // Xoá hàng loạt không có / có cả ids lẫn bộ lọc (message đã dịch theo locale ở service)
+    @ExceptionHandler(InvalidBulkDeleteRequestException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidBulkDeleteRequest(InvalidBulkDeleteRequestException ex) {
+        log.warn("InvalidBulkDeleteRequestException: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ErrorResponse(ex.getMessage()));
+    }
+
     @ExceptionHandler(ProductNotFoundException.class)
     public ResponseEntity<ErrorResponse> handleProductNotFound(ProductNotFoundException ex) {
         log.error("ProductNotFoundException: {}", ex.getMessage(), ex);
@@ -0,0 +1,76 @@
+package com.example.nodotest.Config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ghi số câu SQL, entity load, flush và thời gian JDBC của từng request vào Micrometer,
+ * tag theo method + pattern của endpoint (vd /api/products/{id}) => xem được endpoint nào bị N+1.
+ * Request vượt ngưỡng số câu SQL thì log cảnh báo.
+ */
+@Component
+@Slf4j
+public class QueryStatsFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+    private final long statementWarnThreshold;
+
+    public QueryStatsFilter(MeterRegistry meterRegistry,
+                            @Value("${monitoring.request.statement-warn-threshold:50}") long statementWarnThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.statementWarnThreshold = statementWarnThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestQueryStats.Counters counters = RequestQueryStats.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestQueryStats.end();
+            record(request, counters);
+        }
+    }
+
+    private void record(HttpServletRequest request, RequestQueryStats.Counters counters) {
+        // Chỉ dùng pattern của handler, không dùng URI thật để số tag không tăng vô hạn
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Tags tags = Tags.of("method", request.getMethod(), "uri", pattern != null ? pattern.toString() : "UNKNOWN");
+
+        summary("nodotest.request.sql.statements", tags).record(counters.statements());
+        summary("nodotest.request.entity.loads", tags).record(counters.entityLoads());
+        summary("nodotest.request.flushes", tags).record(counters.flushes());
+        Timer.builder("nodotest.request.jdbc.time")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(counters.jdbcNanos(), TimeUnit.NANOSECONDS);
+
+        if (counters.statements() > statementWarnThreshold) {
+            log.warn("{} {} executed {} SQL statements ({} entity loads, {} flushes)",
+                    request.getMethod(), pattern, counters.statements(), counters.entityLoads(), counters.flushes());
+        }
+    }
+
+    private DistributionSummary summary(String name, Tags tags) {
+        return DistributionSummary.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.nodotest.Config;
+
+import org.hibernate.SessionEventListener;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Đếm số câu SQL / entity load / flush của Hibernate trong request hiện tại (theo luồng).
+ * QueryStatsFilter mở bộ đếm đầu request và ghi ra metrics cuối request;
+ * luồng không có request (job nền, scheduler) thì không đếm.
+ */
+public final class RequestQueryStats {
+
+    private static final ThreadLocal<Counters> CURRENT = new ThreadLocal<>();
+
+    public static final class Counters {
+        private long statements;
+        private long entityLoads;
+        private long flushes;
+        private long jdbcNanos;
+
+        public long statements() {
+            return statements;
+        }
+
+        public long entityLoads() {
+            return entityLoads;
+        }
+
+        public long flushes() {
+            return flushes;
+        }
+
+        public long jdbcNanos() {
+            return jdbcNanos;
+        }
+    }
+
+    private RequestQueryStats() {
+    }
+
+    static Counters begin() {
+        Counters counters = new Counters();
+        CURRENT.set(counters);
+        return counters;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Gắn vào mỗi Session qua hibernate.session.events.auto (Hibernate tự tạo bằng constructor rỗng).
+     */
+    public static class SessionListener implements SessionEventListener {
+        private long executeStart;
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            executeStart = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            Counters counters = CURRENT.get();
+            if (counters != null) {
+                counters.statements++;
+                counters.jdbcNanos += System.nanoTime() - executeStart;
+            }
+        }
+
+        // 1 lần executeBatch tính là 1 round-trip
+        @Override
+        public void jdbcExecuteBatchStart() {
+            executeStart = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            jdbcExecuteStatementEnd();
+        }
+
+        @Override
+        public void flushEnd(int numberOfEntities, int numberOfCollections) {
+            Counters counters = CURRENT.get();
+            if (counters != null) {
+                counters.flushes++;
+            }
+        }
+    }
+
+    // SessionEventListener không có sự kiện load entity => đăng ký PostLoad listener qua Integrator
+    static class LoadCountingIntegrator implements Integrator, PostLoadEventListener {
+
+        @Override
+        public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                              SessionFactoryImplementor sessionFactory) {
+            sessionFactory.getServiceRegistry()
+                    .getService(EventListenerRegistry.class)
+                    .appendListeners(EventType.POST_LOAD, this);
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory,
+                                 SessionFactoryServiceRegistry serviceRegistry) {
+        }
+
+        @Override
+        public void onPostLoad(PostLoadEvent event) {
+            Counters counters = CURRENT.get();
+            if (counters != null) {
+                counters.entityLoads++;
+            }
+        }
+    }
+}
@@ -1,2 +1,84 @@
-package com.example.nodotest.Config;public class WebConfig {
+package com.example.nodotest.Config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Tách export khỏi các endpoint interactive (search, CRUD) bằng 2 bulkhead:
+ * export chỉ được chạy tối đa bulkhead.export.max-concurrent request (mỗi request giữ 1 connection DB
+ * trong lúc stream), vượt quá thì trả 429 + Retry-After ngay; interactive có giới hạn riêng nhỏ hơn
+ * số thread Tomcat nên export không làm đói search và ngược lại.
+ * Phần stream của export chạy trên executor async riêng, cùng kích thước với bulkhead export.
+ */
+@Configuration
+@Slf4j
+public class WebConfig implements WebMvcConfigurer, DisposableBean {
+
+    private static final String[] EXPORT_PATHS = {"/api/categories/export", "/api/product/export"};
+
+    private final Bulkhead exportBulkhead;
+    private final Bulkhead interactiveBulkhead;
+    private final ThreadPoolTaskExecutor exportExecutor;
+
+    public WebConfig(MeterRegistry meterRegistry,
+                     DataSource dataSource,
+                     @Value("${bulkhead.export.max-concurrent:3}") int exportMaxConcurrent,
+                     @Value("${bulkhead.export.retry-after-seconds:30}") long exportRetryAfterSeconds,
+                     @Value("${bulkhead.interactive.max-concurrent:150}") int interactiveMaxConcurrent,
+                     @Value("${bulkhead.interactive.max-wait:500ms}") Duration interactiveMaxWait,
+                     @Value("${bulkhead.interactive.retry-after-seconds:1}") long interactiveRetryAfterSeconds) {
+        this.exportBulkhead = new Bulkhead("export", exportMaxConcurrent, Duration.ZERO,
+                exportRetryAfterSeconds, meterRegistry);
+        this.interactiveBulkhead = new Bulkhead("interactive", interactiveMaxConcurrent, interactiveMaxWait,
+                interactiveRetryAfterSeconds, meterRegistry);
+
+        // Bulkhead đã chặn số export chạy cùng lúc, queue chỉ để dư cho lúc thread cũ chưa kịp trả
+        this.exportExecutor = new ThreadPoolTaskExecutor();
+        exportExecutor.setCorePoolSize(exportMaxConcurrent);
+        exportExecutor.setMaxPoolSize(exportMaxConcurrent);
+        exportExecutor.setQueueCapacity(exportMaxConcurrent);
+        exportExecutor.setThreadNamePrefix("export-stream-");
+        exportExecutor.initialize();
+        new ExecutorServiceMetrics(exportExecutor.getThreadPoolExecutor(), "export-stream", Tags.empty())
+                .bindTo(meterRegistry);
+
+        // Export giữ connection suốt lúc stream: phải chừa connection cho request interactive
+        if (dataSource instanceof HikariDataSource hikari && exportMaxConcurrent >= hikari.getMaximumPoolSize()) {
+            log.warn("bulkhead.export.max-concurrent ({}) >= Hikari maximum-pool-size ({}), "
+                     + "exports can take every DB connection", exportMaxConcurrent, hikari.getMaximumPoolSize());
+        }
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new BulkheadInterceptor(exportBulkhead))
+                .addPathPatterns(EXPORT_PATHS);
+        registry.addInterceptor(new BulkheadInterceptor(interactiveBulkhead))
+                .addPathPatterns("/api/**")
+                .excludePathPatterns(EXPORT_PATHS);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        // Chỉ export dùng StreamingResponseBody, nên executor async của MVC chính là executor export
+        configurer.setTaskExecutor(exportExecutor);
+    }
+
+    @Override
+    public void destroy() {
+        exportExecutor.shutdown();
+    }
 }
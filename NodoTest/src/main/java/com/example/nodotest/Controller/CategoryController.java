@@ -10,6 +10,8 @@ import com.example.nodotest.Exception.CategoryCodeExistsException;
 import com.example.nodotest.Exception.CategoryNotFoundException;
 import com.example.nodotest.Exception.InvalidPageableParameterException;
 import com.example.nodotest.Service.CategoryService;
+import com.example.nodotest.Service.TabularExportService;
+import com.example.nodotest.Service.TabularExportService.ExportFormat;
 import jakarta.validation.Valid;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
@@ -22,7 +24,9 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.Date;
 import java.text.SimpleDateFormat;
 import java.util.List;
@@ -33,10 +37,13 @@ import java.util.Map;
 @RequestMapping("/api/categories")
 public class CategoryController {
     private final CategoryService categoryService;
+    private final TabularExportService tabularExportService;
     private final MessageSource messageSource;
 
-    public CategoryController(CategoryService categoryService, MessageSource messageSource) {
+    public CategoryController(CategoryService categoryService, TabularExportService tabularExportService,
+                              MessageSource messageSource) {
         this.categoryService = categoryService;
+        this.tabularExportService = tabularExportService;
         this.messageSource = messageSource;
     }
 
@@ -150,6 +157,46 @@ public class CategoryController {
         }
     }
 
+    // Export CSV / NDJSON theo Accept (hoặc ?format=csv|ndjson), ghi từng dòng từ JDBC cursor
+    @GetMapping(value = "/export", produces = TabularExportService.TEXT_CSV_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCategoriesCsv(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String categoryCode,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate) {
+        return exportTabular(ExportFormat.CSV, name, categoryCode, startDate, endDate);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCategoriesNdjson(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String categoryCode,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate) {
+        return exportTabular(ExportFormat.NDJSON, name, categoryCode, startDate, endDate);
+    }
+
+    private ResponseEntity<StreamingResponseBody> exportTabular(
+            ExportFormat format, String name, String categoryCode, Date startDate, Date endDate) {
+        tabularExportService.validateDateRange(startDate, endDate);
+
+        boolean csv = format == ExportFormat.CSV;
+        String filename = String.format("Categories_Export_%s.%s",
+                new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date(System.currentTimeMillis())),
+                csv ? "csv" : "ndjson");
+
+        StreamingResponseBody body = out -> tabularExportService.exportCategories(
+                format, name, categoryCode, startDate, endDate, out
+        );
+
+        return ResponseEntity.ok()
+                .contentType(csv
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
     // bai 5
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteCategory(@PathVariable("id") Long id) {
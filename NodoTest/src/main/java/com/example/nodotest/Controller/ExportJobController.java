@@ -0,0 +1,105 @@
+package com.example.nodotest.Controller;
+
+import com.example.nodotest.Dto.Response.ErrorResponse;
+import com.example.nodotest.Dto.Response.ExportJobResponse;
+import com.example.nodotest.Service.ExportJobService;
+import com.example.nodotest.Service.ExportJobService.ExportFilter;
+import com.example.nodotest.Service.ExportJobService.ExportType;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.context.MessageSource;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.sql.Date;
+import java.text.SimpleDateFormat;
+
+/**
+ * Export chạy nền: POST tạo job (202 + jobId), GET /{jobId} xem tiến độ, GET /{jobId}/file tải kết quả.
+ * Chưa có đăng nhập nên user được nhận diện qua header X-User-Id, không có thì theo IP client.
+ */
+@RestController
+@RequestMapping("/api/export-jobs")
+public class ExportJobController {
+    private static final String USER_HEADER = "X-User-Id";
+    private static final MediaType XLSX_MEDIA_TYPE =
+            MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
+    private final ExportJobService exportJobService;
+    private final MessageSource messageSource;
+
+    public ExportJobController(ExportJobService exportJobService, MessageSource messageSource) {
+        this.exportJobService = exportJobService;
+        this.messageSource = messageSource;
+    }
+
+    @PostMapping("/products")
+    public ResponseEntity<ExportJobResponse> exportProducts(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String code,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate,
+            @RequestParam(required = false) Long categoryId,
+            HttpServletRequest request
+    ) {
+        ExportFilter filter = new ExportFilter(name, code, startDate, endDate, categoryId);
+        return accepted(exportJobService.submit(ExportType.PRODUCT, filter, owner(request)));
+    }
+
+    @PostMapping("/categories")
+    public ResponseEntity<ExportJobResponse> exportCategories(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String categoryCode,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate,
+            HttpServletRequest request
+    ) {
+        ExportFilter filter = new ExportFilter(name, categoryCode, startDate, endDate, null);
+        return accepted(exportJobService.submit(ExportType.CATEGORY, filter, owner(request)));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ExportJobResponse> getJob(@PathVariable String jobId, HttpServletRequest request) {
+        return ResponseEntity.ok(exportJobService.getJob(jobId, owner(request)));
+    }
+
+    // Trả file dạng Resource => Spring đọc từ đĩa theo từng đoạn và hỗ trợ Range
+    @GetMapping("/{jobId}/file")
+    public ResponseEntity<?> download(@PathVariable String jobId, HttpServletRequest request) {
+        ExportJobResponse job = exportJobService.getJob(jobId, owner(request));
+        Path file = exportJobService.getResultFile(jobId, owner(request));
+        if (file == null) {
+            String errorMessage = messageSource.getMessage("export.job.notready",
+                    new Object[]{job.status()}, LocaleContextHolder.getLocale());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse(errorMessage));
+        }
+
+        String filename = (job.type().equals(ExportType.PRODUCT.name()) ? "products_" : "Categories_Export_")
+                + new SimpleDateFormat("yyyyMMdd_HHmmss").format(java.util.Date.from(job.finishedAt()))
+                + ".xlsx";
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .contentType(XLSX_MEDIA_TYPE)
+                .body(new FileSystemResource(file));
+    }
+
+    private ResponseEntity<ExportJobResponse> accepted(ExportJobResponse job) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.LOCATION, "/api/export-jobs/" + job.jobId())
+                .body(job);
+    }
+
+    private String owner(HttpServletRequest request) {
+        String userId = request.getHeader(USER_HEADER);
+        return userId != null && !userId.isBlank() ? userId.trim() : request.getRemoteAddr();
+    }
+}
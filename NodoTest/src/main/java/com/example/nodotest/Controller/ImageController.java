@@ -0,0 +1,73 @@
+package com.example.nodotest.Controller;
+
+import com.example.nodotest.Service.ImageService;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/images")
+public class ImageController {
+    // uuid gắn với 1 file không bao giờ đổi nội dung => cache được vĩnh viễn
+    private static final CacheControl IMAGE_CACHE_CONTROL =
+            CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
+    private final ImageService imageService;
+
+    public ImageController(ImageService imageService) {
+        this.imageService = imageService;
+    }
+
+    // Trả file ảnh theo uuid, hỗ trợ If-None-Match (304) và Range (206)
+    // size = original (mặc định) | small | medium
+    @GetMapping("/{uuid}")
+    public ResponseEntity<Resource> getImage(
+            @PathVariable String uuid,
+            @RequestParam(defaultValue = ImageService.SIZE_ORIGINAL) String size,
+            WebRequest webRequest
+    ) {
+        if (!List.of(ImageService.SIZE_ORIGINAL, ImageService.SIZE_SMALL, ImageService.SIZE_MEDIUM).contains(size)) {
+            throw new IllegalArgumentException("Invalid image size: " + size);
+        }
+
+        // Tra uuid/status trước: ảnh đã xoá mềm phải trả 404 kể cả khi client còn giữ ETag cũ
+        ImageService.ImageFile image = imageService.loadImage(uuid, size);
+
+        // Client đã có đúng bản này => 304, không gửi lại nội dung file
+        if (webRequest.checkNotModified(eTag(uuid, image.variant()))) {
+            return null;
+        }
+
+        MediaType contentType = MediaTypeFactory.getMediaType(image.resource())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+
+        // Thumbnail chưa sinh xong => đang trả ảnh gốc thay thế, không cho cache lâu
+        CacheControl cacheControl = image.variant().equals(size)
+                ? IMAGE_CACHE_CONTROL
+                : CacheControl.noCache();
+
+        // Body là Resource nên Spring tự xử lý header Range (trả ResourceRegion, status 206)
+        return ResponseEntity.ok()
+                .eTag(eTag(uuid, image.variant()))
+                .cacheControl(cacheControl)
+                .contentType(contentType)
+                .body(image.resource());
+    }
+
+    private String eTag(String uuid, String variant) {
+        return ImageService.SIZE_ORIGINAL.equals(variant)
+                ? "\"" + uuid + "\""
+                : "\"" + uuid + "-" + variant + "\"";
+    }
+}
@@ -1,15 +1,20 @@
 package com.example.nodotest.Controller;
 
 import com.example.nodotest.Dto.Pagination.PagedResponse;
+import com.example.nodotest.Dto.Request.ProductBulkDeleteRequest;
 import com.example.nodotest.Dto.Request.ProductRequest;
 import com.example.nodotest.Dto.Response.ApiResponse;
+import com.example.nodotest.Dto.Response.BulkDeleteResult;
+import com.example.nodotest.Dto.Response.ImportReport;
 import com.example.nodotest.Dto.Response.ProductResponse;
+import com.example.nodotest.Service.ProductImportService;
 import com.example.nodotest.Service.ProductService;
+import com.example.nodotest.Service.TabularExportService;
+import com.example.nodotest.Service.TabularExportService.ExportFormat;
 import jakarta.annotation.Resource;
 import jakarta.validation.Valid;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -18,9 +23,11 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Date;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
@@ -29,10 +36,15 @@ import java.util.Locale;
 @RequestMapping("/api/product")
 public class ProductController {
     private final ProductService productService;
+    private final ProductImportService productImportService;
+    private final TabularExportService tabularExportService;
     private final MessageSource messageSource;
 
-    public ProductController(ProductService productService, MessageSource messageSource) {
+    public ProductController(ProductService productService, ProductImportService productImportService,
+                             TabularExportService tabularExportService, MessageSource messageSource) {
         this.productService = productService;
+        this.productImportService = productImportService;
+        this.tabularExportService = tabularExportService;
         this.messageSource = messageSource;
     }
 
@@ -47,6 +59,21 @@ public class ProductController {
         return ResponseEntity.ok(productService.createProduct(productRequest, locale));
     }
 
+    // Import product hàng loạt từ file .xlsx/.csv (cùng cột với file export)
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ApiResponse<ImportReport>> importProducts(
+            @RequestParam("file") MultipartFile file
+    ) throws IOException {
+        Locale locale = LocaleContextHolder.getLocale();
+
+        ImportReport report = productImportService.importProducts(file, locale);
+        return ResponseEntity.ok(new ApiResponse<>(
+                200,
+                messageSource.getMessage("product.import.done", null, locale),
+                report
+        ));
+    }
+
     // bai 7
     @GetMapping("/search")
     public ResponseEntity<PagedResponse<ProductResponse>> getProducts(
@@ -57,41 +84,89 @@ public class ProductController {
             @RequestParam(required = false)
             @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate,
             @RequestParam(required = false) Long categoryId,
+            // có tham số cursor (kể cả rỗng cho trang đầu) => phân trang theo cursor, bỏ qua page
+            @RequestParam(required = false) String cursor,
+            // facets=true => kèm số product theo từng category
+            @RequestParam(defaultValue = "false") boolean facets,
             @PageableDefault Pageable pageable
     ) {
-        PagedResponse<ProductResponse> response = productService.getProducts(name, code, startDate, endDate, categoryId, pageable);
+        if (cursor != null) {
+            return ResponseEntity.ok(productService.getProducts(
+                    name, code, startDate, endDate, categoryId, cursor, pageable.getPageSize(), facets
+            ));
+        }
+        PagedResponse<ProductResponse> response = productService.getProducts(name, code, startDate, endDate, categoryId, pageable, facets);
         return ResponseEntity.ok(response);
     }
 
     // bai 8
     @GetMapping("/export")
-    public ResponseEntity<?> exportProducts(
+    public ResponseEntity<StreamingResponseBody> exportProducts(
             @RequestParam(required = false) String name,
             @RequestParam(required = false) String code,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate,
             @RequestParam(required = false) Long categoryId
     ) {
-        try {
-            ByteArrayInputStream in = productService.exportProductsToExcel(
-                    name, code, startDate, endDate, categoryId
-            );
-
-            // Generate filename with timestamp
-            String filename = "products_" +
-                              new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date(System.currentTimeMillis())) +
-                              ".xlsx";
+        // Generate filename with timestamp
+        String filename = "products_" +
+                          new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date(System.currentTimeMillis())) +
+                          ".xlsx";
+
+        // Ghi thẳng workbook vào response, không buffer toàn bộ file trong bộ nhớ
+        StreamingResponseBody body = out -> productService.exportProductsToExcel(
+                name, code, startDate, endDate, categoryId, out
+        );
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
+                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .body(body);
+    }
 
-            InputStreamResource resource = new InputStreamResource(in);
+    // Export CSV / NDJSON theo Accept (hoặc ?format=csv|ndjson), ghi từng dòng từ JDBC cursor
+    @GetMapping(value = "/export", produces = TabularExportService.TEXT_CSV_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportProductsCsv(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String code,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate,
+            @RequestParam(required = false) Long categoryId
+    ) {
+        return exportTabular(ExportFormat.CSV, name, code, startDate, endDate, categoryId);
+    }
 
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
-                    .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                    .body(resource);
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportProductsNdjson(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String code,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date startDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate,
+            @RequestParam(required = false) Long categoryId
+    ) {
+        return exportTabular(ExportFormat.NDJSON, name, code, startDate, endDate, categoryId);
+    }
 
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    private ResponseEntity<StreamingResponseBody> exportTabular(
+            ExportFormat format, String name, String code, Date startDate, Date endDate, Long categoryId
+    ) {
+        tabularExportService.validateDateRange(startDate, endDate);
+
+        boolean csv = format == ExportFormat.CSV;
+        String filename = "products_" +
+                          new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date(System.currentTimeMillis())) +
+                          (csv ? ".csv" : ".ndjson");
+
+        StreamingResponseBody body = out -> tabularExportService.exportProducts(
+                format, name, code, startDate, endDate, categoryId, out
+        );
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
+                .contentType(csv
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     // bai 9
@@ -105,6 +180,21 @@ public class ProductController {
         return ResponseEntity.ok(response);
     }
 
+    // Xoá mềm hàng loạt theo ids hoặc bộ lọc giống /search
+    @PostMapping("/bulk-delete")
+    public ResponseEntity<ApiResponse<BulkDeleteResult>> bulkDeleteProducts(
+            @RequestBody ProductBulkDeleteRequest request
+    ) {
+        Locale locale = LocaleContextHolder.getLocale();
+
+        BulkDeleteResult result = productService.bulkSoftDeleteProducts(request, locale);
+        return ResponseEntity.ok(new ApiResponse<>(
+                200,
+                messageSource.getMessage("delete.success", null, locale),
+                result
+        ));
+    }
+
     // bai 10
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteProduct(
@@ -1,5 +1,8 @@
 package com.example.nodotest.Dto.Pagination;
 
+import com.example.nodotest.Dto.Response.CategoryFacet;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -7,6 +10,10 @@ public class PagedResponse<T> {
     private List<T> content;
     private PaginationInfo pagination;
 
+    // Chỉ có khi tìm kiếm product với facets=true
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<CategoryFacet> facets;
+
     public PagedResponse(List<T> content, PaginationInfo pagination) {
         this.content = content;
         this.pagination = pagination;
@@ -33,4 +40,12 @@ public class PagedResponse<T> {
     public void setPagination(PaginationInfo pagination) {
         this.pagination = pagination;
     }
+
+    public List<CategoryFacet> getFacets() {
+        return facets;
+    }
+
+    public void setFacets(List<CategoryFacet> facets) {
+        this.facets = facets;
+    }
 }
@@ -1,12 +1,26 @@
 package com.example.nodotest.Dto.Pagination;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record PaginationInfo(
         int currentPage,
         int pageSize,
-        long totalElements,
-        int totalPages,
+        Long totalElements,
+        Integer totalPages,
         boolean hasNext,
-        boolean hasPrevious
+        boolean hasPrevious,
+        // token để lấy trang tiếp theo (chỉ có ở chế độ cursor)
+        String nextCursor
 ) {
 
-}
\ No newline at end of file
+    public PaginationInfo(int currentPage, int pageSize, long totalElements, int totalPages,
+                          boolean hasNext, boolean hasPrevious) {
+        this(currentPage, pageSize, totalElements, totalPages, hasNext, hasPrevious, null);
+    }
+
+    // Phân trang theo cursor: không đếm tổng số bản ghi
+    public static PaginationInfo ofCursor(int pageSize, boolean hasNext, boolean hasPrevious, String nextCursor) {
+        return new PaginationInfo(0, pageSize, null, null, hasNext, hasPrevious, nextCursor);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.nodotest.Dto.Pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.Base64;
+
+/**
+ * Vị trí của bản ghi cuối cùng trong trang (createdDate, id),
+ * được mã hóa base64 để client chỉ dùng như một token.
+ */
+public record SeekCursor(Date createdDate, Long id) {
+
+    public String encode() {
+        String raw = createdDate.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SeekCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int idx = raw.indexOf(':');
+            if (idx <= 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new SeekCursor(
+                    new Date(Long.parseLong(raw.substring(0, idx))),
+                    Long.parseLong(raw.substring(idx + 1))
+            );
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException cũng là IllegalArgumentException
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.nodotest.Dto.Projection;
+
+// Kết quả group by category id (chưa có tên, tên lấy từ CategoryDictionary)
+public record CategoryCountRow(Long categoryId, Long count) {
+}
@@ -0,0 +1,5 @@
+package com.example.nodotest.Dto.Projection;
+
+// Đường dẫn file gốc và các ảnh thu nhỏ của 1 ảnh
+public record ImageFileRow(String url, String thumbnailPath, String mediumPath) {
+}
@@ -0,0 +1,5 @@
+package com.example.nodotest.Dto.Projection;
+
+// 1 dòng Product_Category (không join Category)
+public record ProductCategoryLink(Long productId, Long categoryId) {
+}
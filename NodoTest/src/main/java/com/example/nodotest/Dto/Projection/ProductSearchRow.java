@@ -0,0 +1,22 @@
+package com.example.nodotest.Dto.Projection;
+
+import java.sql.Date;
+
+// 1 dòng = 1 product x 1 category x 1 image (category/image có thể null do left join)
+// Tên category không join, lấy từ CategoryDictionary theo categoryId
+public record ProductSearchRow(
+        Long id,
+        String name,
+        String description,
+        Double price,
+        String productCode,
+        Long quantity,
+        String status,
+        Date createdDate,
+        Date modifiedDate,
+        Long categoryId,
+        String imageName,
+        String imageUuid,
+        String imageStatus
+) {
+}
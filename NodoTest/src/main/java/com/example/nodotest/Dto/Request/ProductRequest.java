@@ -32,6 +32,12 @@ public class ProductRequest {
 
     private List<MultipartFile> images;
 
+    // true = update theo diff: chỉ thêm/xoá category và ảnh thay đổi (mặc định thay toàn bộ ảnh như cũ)
+    private Boolean incremental;
+
+    // Chế độ incremental: uuid các ảnh cũ muốn giữ lại (ảnh gửi lại trùng nội dung cũng được giữ)
+    private List<String> keepImageUuids;
+
     public @NotBlank(message = "{product.name.notBlank}") @Size(max = 200, message = "{product.name.size}") String getName() {
         return name;
     }
@@ -79,4 +85,20 @@ public class ProductRequest {
     public void setImages(List<MultipartFile> images) {
         this.images = images;
     }
+
+    public Boolean getIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(Boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public List<String> getKeepImageUuids() {
+        return keepImageUuids;
+    }
+
+    public void setKeepImageUuids(List<String> keepImageUuids) {
+        this.keepImageUuids = keepImageUuids;
+    }
 }
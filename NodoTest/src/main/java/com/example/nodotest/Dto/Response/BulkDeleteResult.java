@@ -0,0 +1,5 @@
+package com.example.nodotest.Dto.Response;
+
+// Số dòng bị ảnh hưởng sau khi xoá mềm hàng loạt
+public record BulkDeleteResult(int deletedProducts, int deletedImages) {
+}
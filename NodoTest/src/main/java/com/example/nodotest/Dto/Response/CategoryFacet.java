@@ -0,0 +1,5 @@
+package com.example.nodotest.Dto.Response;
+
+// Số product khớp bộ lọc tìm kiếm trong 1 category
+public record CategoryFacet(Long categoryId, String categoryName, long count) {
+}
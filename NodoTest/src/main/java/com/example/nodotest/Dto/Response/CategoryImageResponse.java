@@ -11,6 +11,8 @@ public class CategoryImageResponse {
     private String url;       // URL của ảnh
     private String uuid;      // UUID của ảnh
     private String status;    // Trạng thái ảnh (1 = active, 0 = deleted)
+    private String thumbnailUrl;  // Link ảnh nhỏ (~150px) cho danh sách
+    private String mediumUrl;     // Link ảnh vừa (~480px)
 
     public String getName() {
         return name;
@@ -43,4 +45,20 @@ public class CategoryImageResponse {
     public void setStatus(String status) {
         this.status = status;
     }
+
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    public void setThumbnailUrl(String thumbnailUrl) {
+        this.thumbnailUrl = thumbnailUrl;
+    }
+
+    public String getMediumUrl() {
+        return mediumUrl;
+    }
+
+    public void setMediumUrl(String mediumUrl) {
+        this.mediumUrl = mediumUrl;
+    }
 }
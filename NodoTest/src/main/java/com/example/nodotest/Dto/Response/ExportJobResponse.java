@@ -0,0 +1,19 @@
+package com.example.nodotest.Dto.Response;
+
+import java.time.Instant;
+
+/**
+ * Trạng thái 1 export job. rowsWritten tăng dần trong lúc chạy;
+ * downloadUrl chỉ có khi status = DONE, error chỉ có khi status = FAILED.
+ */
+public record ExportJobResponse(
+        String jobId,
+        String type,
+        String status,
+        long rowsWritten,
+        String downloadUrl,
+        String error,
+        Instant createdAt,
+        Instant finishedAt
+) {
+}
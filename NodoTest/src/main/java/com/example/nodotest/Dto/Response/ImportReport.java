@@ -0,0 +1,19 @@
+package com.example.nodotest.Dto.Response;
+
+import java.util.List;
+
+/**
+ * Kết quả import product: số dòng đã xử lý / thành công / lỗi và chi tiết lỗi từng dòng.
+ * errors chỉ giữ tối đa ProductImportService.MAX_REPORTED_ERRORS dòng, failedRows vẫn đếm đủ.
+ */
+public record ImportReport(
+        int totalRows,
+        int importedRows,
+        int failedRows,
+        List<RowError> errors
+) {
+
+    // rowNumber là số dòng trong file (dòng header = 1)
+    public record RowError(int rowNumber, String productCode, String message) {
+    }
+}
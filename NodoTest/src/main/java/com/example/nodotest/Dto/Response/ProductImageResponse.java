@@ -14,6 +14,10 @@ public class ProductImageResponse {
 
     private String status;  // "1" = active, "0" = deleted
 
+    private String thumbnailUrl;
+
+    private String mediumUrl;
+
     public String getName() {
         return name;
     }
@@ -45,4 +49,20 @@ public class ProductImageResponse {
     public void setStatus(String status) {
         this.status = status;
     }
+
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    public void setThumbnailUrl(String thumbnailUrl) {
+        this.thumbnailUrl = thumbnailUrl;
+    }
+
+    public String getMediumUrl() {
+        return mediumUrl;
+    }
+
+    public void setMediumUrl(String mediumUrl) {
+        this.mediumUrl = mediumUrl;
+    }
 }
@@ -1,6 +1,8 @@
 package com.example.nodotest.Entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.sql.Date;
 import java.util.ArrayList;
@@ -8,7 +10,10 @@ import java.util.List;
 import java.util.Set;
 
 @Entity
-@Table(name = "Category")
+// Index khai báo lại từ db/migration (để ddl-auto=create ở profile perf cũng có)
+@Table(name = "Category", indexes = @Index(name = "idx_category_status_created", columnList = "status, created_date, id"))
+// Second-level cache: category gần như không đổi, đọc rất nhiều (region cấu hình trong application.conf)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "category")
 public class Category {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -45,6 +50,8 @@ public class Category {
     private Set<ProductCategory> productCategories;
 
 
+    // Collection phía inverse: bị evict khi CategoryImage.category thay đổi (hibernate.cache.auto_evict_collection_cache)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "categoryImages")
     @OneToMany(mappedBy = "category", fetch = FetchType.LAZY)
     private List<CategoryImage> images = new ArrayList<>();
 
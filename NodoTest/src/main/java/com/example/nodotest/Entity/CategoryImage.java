@@ -1,11 +1,17 @@
 package com.example.nodotest.Entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.sql.Date;
 
 @Entity
-@Table(name = "Category_Image")
+@Table(name = "Category_Image", indexes = {
+        @Index(name = "idx_category_image_content_hash", columnList = "content_hash"),
+        @Index(name = "idx_category_image_category_status", columnList = "category_id, status")
+})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "categoryImage")
 public class CategoryImage {
 
     @Id
@@ -29,6 +35,15 @@ public class CategoryImage {
     @Column(name = "uuid", nullable = false, unique = true, length = 36)
     private String uuid;  // UUID của ảnh (đảm bảo duy nhất)
 
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;  // SHA-256 nội dung file, nhiều ảnh có thể dùng chung 1 file
+
+    @Column(name = "thumbnail_path", length = 1000)
+    private String thumbnailPath;  // Ảnh nhỏ (~150px), sinh nền sau khi commit
+
+    @Column(name = "medium_path", length = 1000)
+    private String mediumPath;  // Ảnh vừa (~480px), sinh nền sau khi commit
+
     @Column(name = "status", columnDefinition = "ENUM('0', '1') DEFAULT '1'")
     private String status;  // Trạng thái ảnh (1 = active, 0 = deleted)
 
@@ -111,6 +126,30 @@ public class CategoryImage {
         this.uuid = uuid;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getThumbnailPath() {
+        return thumbnailPath;
+    }
+
+    public void setThumbnailPath(String thumbnailPath) {
+        this.thumbnailPath = thumbnailPath;
+    }
+
+    public String getMediumPath() {
+        return mediumPath;
+    }
+
+    public void setMediumPath(String mediumPath) {
+        this.mediumPath = mediumPath;
+    }
+
     public String getStatus() {
         return status;
     }
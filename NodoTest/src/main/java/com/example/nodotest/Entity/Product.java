@@ -8,7 +8,8 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "Product")
+// Index khai báo lại từ db/migration (để ddl-auto=create ở profile perf cũng có)
+@Table(name = "Product", indexes = @Index(name = "idx_product_status_created", columnList = "status, created_date, id"))
 public class Product {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
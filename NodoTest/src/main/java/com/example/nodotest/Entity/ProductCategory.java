@@ -6,7 +6,8 @@ import java.util.Date;
 import java.util.Objects;
 
 @Entity
-@Table(name = "Product_Category")
+// PK (product_id, category_id) dùng cho tra theo product; index ngược để lọc product theo category
+@Table(name = "Product_Category", indexes = @Index(name = "idx_product_category_category", columnList = "category_id, product_id"))
 public class ProductCategory {
     @EmbeddedId
     private ProductCategoryKey id;
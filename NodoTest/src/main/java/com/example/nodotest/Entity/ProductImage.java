@@ -5,7 +5,10 @@ import jakarta.persistence.*;
 import java.util.Date;
 
 @Entity
-@Table(name = "Product_Image")
+@Table(name = "Product_Image", indexes = {
+        @Index(name = "idx_product_image_content_hash", columnList = "content_hash"),
+        @Index(name = "idx_product_image_product_status", columnList = "product_id, status")
+})
 public class ProductImage {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -25,6 +28,15 @@ public class ProductImage {
     @Column(name = "uuid", nullable = false, unique = true, length = 36)
     private String uuid;
 
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "thumbnail_path", length = 1000)
+    private String thumbnailPath;
+
+    @Column(name = "medium_path", length = 1000)
+    private String mediumPath;
+
     @Column(name = "status", columnDefinition = "ENUM('0', '1') DEFAULT '1'")
     private String status;  // "1" = active, "0" = deleted
 
@@ -98,6 +110,30 @@ public class ProductImage {
         this.uuid = uuid;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getThumbnailPath() {
+        return thumbnailPath;
+    }
+
+    public void setThumbnailPath(String thumbnailPath) {
+        this.thumbnailPath = thumbnailPath;
+    }
+
+    public String getMediumPath() {
+        return mediumPath;
+    }
+
+    public void setMediumPath(String mediumPath) {
+        this.mediumPath = mediumPath;
+    }
+
     public String getStatus() {
         return status;
     }
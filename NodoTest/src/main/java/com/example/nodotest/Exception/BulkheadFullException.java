@@ -0,0 +1,22 @@
+package com.example.nodotest.Exception;
+
+// Nhóm endpoint (export / interactive) đã đủ số request chạy đồng thời
+public class BulkheadFullException extends RuntimeException {
+
+    private final String bulkhead;
+    private final long retryAfterSeconds;
+
+    public BulkheadFullException(String bulkhead, long retryAfterSeconds) {
+        super("Bulkhead is full: " + bulkhead);
+        this.bulkhead = bulkhead;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getBulkhead() {
+        return bulkhead;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.nodotest.Exception.ErrorProduct;
+
+// Yêu cầu xoá hàng loạt phải có đúng 1 trong 2: danh sách id hoặc bộ lọc
+public class InvalidBulkDeleteRequestException extends RuntimeException {
+    public InvalidBulkDeleteRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.nodotest.Exception;
+
+public class ExportJobNotFoundException extends RuntimeException {
+    public ExportJobNotFoundException(String message) {
+        super(message);
+    }
+}
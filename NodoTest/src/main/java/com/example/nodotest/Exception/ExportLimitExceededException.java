@@ -0,0 +1,8 @@
+package com.example.nodotest.Exception;
+
+// User đã có quá nhiều export job đang chạy, hoặc hàng đợi export đã đầy
+public class ExportLimitExceededException extends RuntimeException {
+    public ExportLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -12,13 +12,30 @@ import java.util.List;
 public interface CategoryImageMapper {
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "category", ignore = true) // Category sẽ được set trong service
+    @Mapping(target = "contentHash", ignore = true) // Hash được set trong service
+    @Mapping(target = "thumbnailPath", ignore = true) // Thumbnail sinh nền sau khi commit
+    @Mapping(target = "mediumPath", ignore = true)
     @Mapping(target = "status")
         // Trạng thái ảnh là 1
     CategoryImage toCategoryImage(CategoryImageRequest categoryImageRequest);
 
+    // Không trả đường dẫn file trên server, client tải ảnh qua /api/images/{uuid}
+    @Mapping(target = "url", expression = "java(imageUrl(categoryImage.getUuid()))")
+    @Mapping(target = "thumbnailUrl", expression = "java(imageUrl(categoryImage.getUuid(), \"small\"))")
+    @Mapping(target = "mediumUrl", expression = "java(imageUrl(categoryImage.getUuid(), \"medium\"))")
     CategoryImageResponse toCategoryImageResponse(CategoryImage categoryImage);
 
     List<CategoryImageResponse> toCategoryImageResponseList(List<CategoryImage> categoryImageList);
 
     List<CategoryImage> toCategoryImageList(List<CategoryImageRequest> requests);
+
+    // Link tới endpoint trả ảnh gốc
+    default String imageUrl(String uuid) {
+        return uuid == null ? null : "/api/images/" + uuid;
+    }
+
+    // Link tới endpoint trả ảnh (/api/images/{uuid}), chưa có thumbnail thì endpoint trả ảnh gốc
+    default String imageUrl(String uuid, String size) {
+        return uuid == null ? null : "/api/images/" + uuid + "?size=" + size;
+    }
 }
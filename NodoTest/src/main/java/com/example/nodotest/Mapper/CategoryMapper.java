@@ -10,7 +10,7 @@ import org.mapstruct.MappingTarget;
 
 import java.util.List;
 
-@Mapper(componentModel = "spring")
+@Mapper(componentModel = "spring", uses = CategoryImageMapper.class)
 public interface CategoryMapper {
 
     // Ánh xạ từ CategoryRequest sang Category
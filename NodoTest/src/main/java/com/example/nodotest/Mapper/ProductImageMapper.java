@@ -15,9 +15,16 @@ public interface ProductImageMapper {
 
      @Mapping(target = "id", ignore = true)
      @Mapping(target = "product", ignore = true)
+     @Mapping(target = "contentHash", ignore = true)
+     @Mapping(target = "thumbnailPath", ignore = true)
+     @Mapping(target = "mediumPath", ignore = true)
      @Mapping(target = "status")
     ProductImage toEntity(ProductImageRequest productImageRequest);
 
+    // Không trả đường dẫn file trên server, client tải ảnh qua /api/images/{uuid}
+    @Mapping(target = "url", expression = "java(imageUrl(productImage.getUuid()))")
+    @Mapping(target = "thumbnailUrl", expression = "java(imageUrl(productImage.getUuid(), \"small\"))")
+    @Mapping(target = "mediumUrl", expression = "java(imageUrl(productImage.getUuid(), \"medium\"))")
     ProductImageResponse toResponse(ProductImage productImage);
 
     List<ProductImage> toEntities(List<ProductImageRequest> productImageRequest);
@@ -26,6 +33,16 @@ public interface ProductImageMapper {
 
     void updateProductImageFromRequest(ProductImageRequest productImageRequest, @MappingTarget ProductImage productImage);
 
+    // Link tới endpoint trả ảnh gốc
+    default String imageUrl(String uuid) {
+        return uuid == null ? null : "/api/images/" + uuid;
+    }
+
+    // Link tới endpoint trả ảnh (/api/images/{uuid}), chưa có thumbnail thì endpoint trả ảnh gốc
+    default String imageUrl(String uuid, String size) {
+        return uuid == null ? null : "/api/images/" + uuid + "?size=" + size;
+    }
+
     default Date toSqlDate(long timeInMillis) {
         return new Date(timeInMillis);
     }
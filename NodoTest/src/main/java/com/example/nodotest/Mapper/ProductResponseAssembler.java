@@ -0,0 +1,129 @@
+package com.example.nodotest.Mapper;
+
+import com.example.nodotest.Dto.Projection.ProductSearchRow;
+import com.example.nodotest.Dto.Response.ProductImageResponse;
+import com.example.nodotest.Dto.Response.ProductResponse;
+import com.example.nodotest.Entity.Category;
+import com.example.nodotest.Entity.Product;
+import com.example.nodotest.Entity.ProductCategory;
+import com.example.nodotest.Entity.ProductImage;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Dựng ProductResponse (kèm chuỗi tên category + danh sách ảnh) cho các API danh sách / tìm kiếm.
+ * Chỉ làm việc trên dữ liệu đã lấy từ DB, không query gì thêm => benchmark riêng được (src/jmh).
+ */
+@Component
+public class ProductResponseAssembler {
+
+    private final ProductMapper productMapper;
+    private final ProductImageMapper productImageMapper;
+
+    public ProductResponseAssembler(ProductMapper productMapper, ProductImageMapper productImageMapper) {
+        this.productMapper = productMapper;
+        this.productImageMapper = productImageMapper;
+    }
+
+    // Từ entity + category / ảnh đã lấy theo lô, giữ thứ tự products
+    public List<ProductResponse> fromEntities(List<Product> products,
+                                              List<ProductCategory> productCategories,
+                                              List<ProductImage> productImages) {
+        if (products.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Group categories by product ID
+        Map<Long, List<Category>> categoryMap = productCategories.stream()
+                .collect(Collectors.groupingBy(
+                        pc -> pc.getProduct().getId(),
+                        Collectors.mapping(ProductCategory::getCategory, Collectors.toList())
+                ));
+
+        // Group images by product ID
+        Map<Long, List<ProductImage>> imageMap = productImages.stream()
+                .collect(Collectors.groupingBy(pi -> pi.getProduct().getId()));
+
+        return products.stream()
+                .map(product -> buildProductResponse(product, categoryMap, imageMap))
+                .toList();
+    }
+
+    private ProductResponse buildProductResponse(
+            Product product,
+            Map<Long, List<Category>> categoryMap,
+            Map<Long, List<ProductImage>> imageMap
+    ) {
+
+        ProductResponse response = productMapper.toResponse(product);
+
+        // Map categories to comma-separated string
+        List<Category> categories = categoryMap.getOrDefault(product.getId(), Collections.emptyList());
+        String categoryNames = categories.stream()
+                .map(Category::getName)
+                .collect(Collectors.joining(", "));
+        response.setCategories(categoryNames);
+
+        // Map images using ProductImageMapper
+        List<ProductImage> images = imageMap.getOrDefault(product.getId(), Collections.emptyList());
+        List<ProductImageResponse> imageResponses = productImageMapper.toResponses(images);
+        response.setImages(imageResponses);
+
+        return response;
+    }
+
+    /**
+     * Từ các dòng projection (product x category x image), giữ đúng thứ tự productIds.
+     * categoryName: tên category đang active theo id, null = bỏ qua category đó.
+     */
+    public List<ProductResponse> fromSearchRows(List<Long> productIds,
+                                                List<ProductSearchRow> rows,
+                                                Function<Long, String> categoryName) {
+        Map<Long, ProductResponse> responses = new HashMap<>();
+        Map<Long, Map<Long, String>> categoryNames = new HashMap<>();
+        Map<Long, Map<String, ProductImageResponse>> images = new HashMap<>();
+
+        for (ProductSearchRow row : rows) {
+            responses.computeIfAbsent(row.id(), id -> new ProductResponse(
+                    row.id(), row.name(), row.description(), row.price(), row.productCode(), row.quantity(),
+                    row.status(), row.createdDate(), row.modifiedDate(), null, null
+            ));
+
+            // Join nhân bản dòng => gom theo category id / image uuid
+            Map<Long, String> names = categoryNames.computeIfAbsent(row.id(), id -> new LinkedHashMap<>());
+            String name = categoryName.apply(row.categoryId());
+            if (name != null) {
+                names.putIfAbsent(row.categoryId(), name);
+            }
+
+            Map<String, ProductImageResponse> productImages = images.computeIfAbsent(row.id(), id -> new LinkedHashMap<>());
+            if (row.imageUuid() != null && !productImages.containsKey(row.imageUuid())) {
+                productImages.put(row.imageUuid(), new ProductImageResponse(
+                        row.imageName(), row.imageUuid(), productImageMapper.imageUrl(row.imageUuid()), row.imageStatus(),
+                        productImageMapper.imageUrl(row.imageUuid(), "small"),
+                        productImageMapper.imageUrl(row.imageUuid(), "medium")
+                ));
+            }
+        }
+
+        List<ProductResponse> result = new ArrayList<>(productIds.size());
+        for (Long id : productIds) {
+            ProductResponse response = responses.get(id);
+            if (response == null) {
+                continue;
+            }
+            response.setCategories(String.join(", ", categoryNames.get(id).values()));
+            response.setImages(new ArrayList<>(images.get(id).values()));
+            result.add(response);
+        }
+        return result;
+    }
+}
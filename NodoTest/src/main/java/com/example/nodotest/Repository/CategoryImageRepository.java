@@ -1,10 +1,16 @@
 package com.example.nodotest.Repository;
 
+import com.example.nodotest.Dto.Projection.ImageFileRow;
 import com.example.nodotest.Entity.CategoryImage;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -13,6 +19,11 @@ import java.util.Optional;
 public interface CategoryImageRepository extends JpaRepository<CategoryImage, Long> {
 
     // select all categoryImage theo status =1 và list id category
+    // Query cache: bị huỷ khi Category_Image hoặc Category có ghi (kể cả update HQL updateDerivativesByUuid)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "categoryImageQuery")
+    })
     @Query(value = "select i from CategoryImage i " +
                    "join fetch i.category c " +
                    "where (:status is null or i.status =:status) " +
@@ -29,4 +40,26 @@ public interface CategoryImageRepository extends JpaRepository<CategoryImage, Lo
                                                       @Param("status") String status
                                          );
 
+    // Đếm số ảnh (kể cả status = 0) đang trỏ tới cùng 1 file nội dung
+    @Query(value = "select count(i) from CategoryImage i " +
+                   "where i.contentHash =:contentHash " +
+                   "and i.url =:url")
+    long countByContentHashAndUrl(@Param("contentHash") String contentHash, @Param("url") String url);
+
+    // Lấy đường dẫn file (gốc + thumbnail) của ảnh theo uuid (dùng cho endpoint trả ảnh)
+    @Query(value = "select new com.example.nodotest.Dto.Projection.ImageFileRow(i.url, i.thumbnailPath, i.mediumPath) " +
+                   "from CategoryImage i " +
+                   "where i.uuid =:uuid " +
+                   "and i.status =:status")
+    Optional<ImageFileRow> findFilesByUuidAndStatus(@Param("uuid") String uuid, @Param("status") String status);
+
+    // Ghi lại đường dẫn thumbnail sau khi sinh xong (chạy ngoài transaction của request)
+    @Transactional
+    @Modifying
+    @Query(value = "update CategoryImage i " +
+                   "set i.thumbnailPath =:thumbnailPath, i.mediumPath =:mediumPath " +
+                   "where i.uuid =:uuid")
+    int updateDerivativesByUuid(@Param("uuid") String uuid,
+                                @Param("thumbnailPath") String thumbnailPath,
+                                @Param("mediumPath") String mediumPath);
 }
@@ -2,10 +2,13 @@ package com.example.nodotest.Repository;
 
 import com.example.nodotest.Dto.Response.CategoryResponse;
 import com.example.nodotest.Entity.Category;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -51,12 +54,21 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     );
 
 
+    // Query cache: kết quả (danh sách id) bị huỷ khi bảng Category có ghi, entity lấy từ region "category"
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "categoryQuery")
+    })
     @Query("select c from Category c " +
            "where c.id =:id " +
            "and (:status is null or c.status =:status)")
     Optional<Category> findByIdAndStatus(@Param("id") Long id, @Param("status") String status);
 
     // get list categoryID with status
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "categoryQuery")
+    })
     @Query("select c from Category c " +
            "where c.id in :id " +
            "and (:status is null or c.status =:status)")
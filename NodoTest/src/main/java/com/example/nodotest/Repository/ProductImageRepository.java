@@ -1,5 +1,6 @@
 package com.example.nodotest.Repository;
 
+import com.example.nodotest.Dto.Projection.ImageFileRow;
 import com.example.nodotest.Entity.ProductImage;
 import org.hibernate.annotations.QueryCacheLayout;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -7,9 +8,12 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Date;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProductImageRepository extends JpaRepository<ProductImage, Long> {
@@ -33,4 +37,45 @@ public interface ProductImageRepository extends JpaRepository<ProductImage, Long
             @Param("status") String status,
             @Param("modifiedDate") Date modifiedDate
     );
+
+    // Update status các ảnh active của product theo danh sách uuid
+    @Modifying
+    @Query("UPDATE ProductImage pi SET pi.status = :status, pi.modifiedDate = :modifiedDate " +
+           "WHERE pi.product.id = :productId AND pi.uuid IN :uuids AND pi.status = '1'")
+    int updateStatusByProductIdAndUuids(
+            @Param("productId") Long productId,
+            @Param("uuids") Collection<String> uuids,
+            @Param("status") String status,
+            @Param("modifiedDate") Date modifiedDate
+    );
+
+    // Giống updateStatusByProductId nhưng cho nhiều product trong 1 câu UPDATE
+    @Modifying
+    @Query("UPDATE ProductImage pi SET pi.status = :status, pi.modifiedDate = :modifiedDate " +
+           "WHERE pi.product.id IN :productIds AND pi.status = '1'")
+    int updateStatusByProductIds(
+            @Param("productIds") Collection<Long> productIds,
+            @Param("status") String status,
+            @Param("modifiedDate") Date modifiedDate
+    );
+
+    // Đếm số ảnh (kể cả status = 0) đang trỏ tới cùng 1 file nội dung
+    @Query("SELECT count(pi) FROM ProductImage pi WHERE pi.contentHash = :contentHash AND pi.url = :url")
+    long countByContentHashAndUrl(@Param("contentHash") String contentHash, @Param("url") String url);
+
+    // Lấy đường dẫn file (gốc + thumbnail) của ảnh theo uuid (dùng cho endpoint trả ảnh)
+    @Query("SELECT new com.example.nodotest.Dto.Projection.ImageFileRow(pi.url, pi.thumbnailPath, pi.mediumPath) " +
+           "FROM ProductImage pi WHERE pi.uuid = :uuid AND pi.status = :status")
+    Optional<ImageFileRow> findFilesByUuidAndStatus(@Param("uuid") String uuid, @Param("status") String status);
+
+    // Ghi lại đường dẫn thumbnail sau khi sinh xong (chạy ngoài transaction của request)
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProductImage pi SET pi.thumbnailPath = :thumbnailPath, pi.mediumPath = :mediumPath " +
+           "WHERE pi.uuid = :uuid")
+    int updateDerivativesByUuid(
+            @Param("uuid") String uuid,
+            @Param("thumbnailPath") String thumbnailPath,
+            @Param("mediumPath") String mediumPath
+    );
 }
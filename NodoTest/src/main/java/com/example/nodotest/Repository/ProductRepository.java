@@ -1,17 +1,26 @@
 package com.example.nodotest.Repository;
 
+import com.example.nodotest.Dto.Projection.CategoryCountRow;
+import com.example.nodotest.Dto.Projection.ProductCategoryLink;
+import com.example.nodotest.Dto.Projection.ProductSearchRow;
 import com.example.nodotest.Entity.Product;
 import com.example.nodotest.Entity.ProductCategory;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.sql.Date;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
@@ -19,22 +28,88 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     // check exist product_code
     Boolean existsByProductCode(String productCode);
 
-    @Query("select distinct p from Product p " +
+    // Tìm kiếm 2 bước - bước 1: chỉ lấy id của trang hiện tại.
+    // Lọc category bằng EXISTS thay cho DISTINCT + join nên DB có thể dừng sớm theo index và sort
+    @Query(value = "select p.id from Product p " +
+                   "where p.status = :status " +
+                   "and (:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%')) ESCAPE '\\') " +
+                   "and (:code IS NULL OR LOWER(p.productCode) LIKE LOWER(CONCAT('%', :code, '%')) ESCAPE '\\') " +
+                   "and (:startDate IS NULL OR p.createdDate >= :startDate) " +
+                   "and (:endDate IS NULL OR p.createdDate <= :endDate) " +
+                   "and (:cateId IS NULL OR exists (select 1 from ProductCategory pc " +
+                   "where pc.product = p and pc.category.id = :cateId)) " +
+                   "and (:ids IS NULL OR p.id in :ids)",
+           countQuery = "select count(p) from Product p " +
+                        "where p.status = :status " +
+                        "and (:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%')) ESCAPE '\\') " +
+                        "and (:code IS NULL OR LOWER(p.productCode) LIKE LOWER(CONCAT('%', :code, '%')) ESCAPE '\\') " +
+                        "and (:startDate IS NULL OR p.createdDate >= :startDate) " +
+                        "and (:endDate IS NULL OR p.createdDate <= :endDate) " +
+                        "and (:cateId IS NULL OR exists (select 1 from ProductCategory pc " +
+                        "where pc.product = p and pc.category.id = :cateId)) " +
+                        "and (:ids IS NULL OR p.id in :ids)")
+    Page<Long> findProductIdsByStatus(@Param("status") String status,
+                                      @Param("name") String name,
+                                      @Param("code") String code,
+                                      @Param("startDate") Date startDate,
+                                      @Param("endDate") Date endDate,
+                                      @Param("cateId") Long cateId,
+                                      @Param("ids") Collection<Long> ids,
+                                      Pageable pageable);
+
+    // Tìm kiếm 2 bước - bước 2: lấy product + category id + ảnh của các id trên trong 1 query,
+    // trả thẳng về DTO (không qua persistence context); tên category tra trong CategoryDictionary
+    @Query("select new com.example.nodotest.Dto.Projection.ProductSearchRow(" +
+           "p.id, p.name, p.description, p.price, p.productCode, p.quantity, p.status, " +
+           "p.createdDate, p.modifiedDate, pc.id.categoryId, i.name, i.uuid, i.status) " +
+           "from Product p " +
            "left join p.productCategories pc " +
-           "left join pc.category c " +
+           "left join p.productImages i on i.status = '1' " +
+           "where p.id in :productIds " +
+           "order by pc.id.categoryId, i.id")
+    List<ProductSearchRow> findSearchRowsByProductIds(@Param("productIds") Collection<Long> productIds);
+
+    // Facet: số product active khớp bộ lọc trong từng category, 1 câu group by trên Product_Category
+    // (khoá chính (product_id, category_id) nên count không bị trùng)
+    @Query("select new com.example.nodotest.Dto.Projection.CategoryCountRow(pc.id.categoryId, count(p.id)) " +
+           "from ProductCategory pc join pc.product p " +
            "where p.status = :status " +
            "and (:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%')) ESCAPE '\\') " +
            "and (:code IS NULL OR LOWER(p.productCode) LIKE LOWER(CONCAT('%', :code, '%')) ESCAPE '\\') " +
            "and (:startDate IS NULL OR p.createdDate >= :startDate) " +
            "and (:endDate IS NULL OR p.createdDate <= :endDate) " +
-           "and (:cateId IS NULL OR c.id = :cateId)")
-    Page<Product> getAllProductsByStatus(@Param("status") String status,
-                                         @Param("name") String name,
-                                         @Param("code") String code,
-                                         @Param("startDate") Date startDate,
-                                         @Param("endDate") Date endDate,
-                                         @Param("cateId") Long cateId,
-                                         Pageable pageable);
+           "and (:ids IS NULL OR p.id in :ids) " +
+           "group by pc.id.categoryId")
+    List<CategoryCountRow> countByCategory(@Param("status") String status,
+                                           @Param("name") String name,
+                                           @Param("code") String code,
+                                           @Param("startDate") Date startDate,
+                                           @Param("endDate") Date endDate,
+                                           @Param("ids") Collection<Long> ids);
+
+    // Phân trang theo cursor (keyset): seek theo (createdDate, id) thay vì offset, không có count query
+    @Query("select p from Product p " +
+           "where p.status = :status " +
+           "and (:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%')) ESCAPE '\\') " +
+           "and (:code IS NULL OR LOWER(p.productCode) LIKE LOWER(CONCAT('%', :code, '%')) ESCAPE '\\') " +
+           "and (:startDate IS NULL OR p.createdDate >= :startDate) " +
+           "and (:endDate IS NULL OR p.createdDate <= :endDate) " +
+           "and (:cateId IS NULL OR exists (select 1 from ProductCategory pc " +
+           "where pc.product = p and pc.category.id = :cateId)) " +
+           "and (:cursorDate IS NULL OR p.createdDate < :cursorDate " +
+           "or (p.createdDate = :cursorDate and p.id < :cursorId)) " +
+           "and (:ids IS NULL OR p.id in :ids) " +
+           "order by p.createdDate desc, p.id desc")
+    List<Product> findProductsAfterCursor(@Param("status") String status,
+                                          @Param("name") String name,
+                                          @Param("code") String code,
+                                          @Param("startDate") Date startDate,
+                                          @Param("endDate") Date endDate,
+                                          @Param("cateId") Long cateId,
+                                          @Param("cursorDate") Date cursorDate,
+                                          @Param("cursorId") Long cursorId,
+                                          @Param("ids") Collection<Long> ids,
+                                          Pageable pageable);
 
     @Query("select pc From ProductCategory pc " +
            "join fetch pc.category c " +
@@ -47,38 +122,97 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
                                             @Param("statusCate") String statusCate
                                             );
 
+    // dữ liệu để build trigram index lúc khởi động
+    @Query("select p.id, p.name, p.productCode from Product p where p.status = :status")
+    List<Object[]> findSearchableFields(@Param("status") String status);
+
     @Query("select p from Product p " +
            "where p.id =:id " +
            "and (:status is null or p.status =:status)")
     Optional<Product> findByIdAndStatus(@Param("id") Long id, @Param("status") String status);
 
 
-    // Query export excel
-    @Query("select DISTINCT p from Product p " +
-           "left join p.productCategories pc " +
-           "left join pc.category c " +
+    // Lấy id theo bộ lọc của /search để xử lý hàng loạt, đi theo id tăng dần từng đoạn (keyset)
+    @Query("select p.id from Product p " +
+           "where p.status = :status " +
+           "and (:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%')) ESCAPE '\\') " +
+           "and (:code IS NULL OR LOWER(p.productCode) LIKE LOWER(CONCAT('%', :code, '%')) ESCAPE '\\') " +
+           "and (:startDate IS NULL OR p.createdDate >= :startDate) " +
+           "and (:endDate IS NULL OR p.createdDate <= :endDate) " +
+           "and (:cateId IS NULL OR exists (select 1 from ProductCategory pc " +
+           "where pc.product = p and pc.category.id = :cateId)) " +
+           "and (:afterId IS NULL OR p.id > :afterId) " +
+           "order by p.id")
+    List<Long> findIdsForBulkUpdate(@Param("status") String status,
+                                    @Param("name") String name,
+                                    @Param("code") String code,
+                                    @Param("startDate") Date startDate,
+                                    @Param("endDate") Date endDate,
+                                    @Param("cateId") Long cateId,
+                                    @Param("afterId") Long afterId,
+                                    Pageable pageable);
+
+    // Đổi status nhiều product trong 1 câu UPDATE, chỉ tính các product đang ở status cũ
+    @Modifying
+    @Query("update Product p set p.status = :newStatus, p.modifiedDate = :modifiedDate " +
+           "where p.id in :ids and p.status = :status")
+    int updateStatusByIds(@Param("ids") Collection<Long> ids,
+                          @Param("status") String status,
+                          @Param("newStatus") String newStatus,
+                          @Param("modifiedDate") Date modifiedDate);
+
+    // Stream export excel: đọc tuần tự bằng con trỏ, mỗi lần lấy 1000 dòng (không load hết vào heap)
+    // dùng EXISTS thay cho DISTINCT + join để không phải gom/sắp xếp toàn bộ kết quả
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("select p from Product p " +
            "where p.status = :status " +
            "and (:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%'))) " +
            "and (:code is null or lower(p.productCode) like lower(concat('%', :code, '%'))) " +
            "and (:startDate is null or p.createdDate >= :startDate) " +
            "and (:endDate is null or p.createdDate <= :endDate) " +
-           "and (:cateId is null or c.id = :cateId) " +
-           "order by p.createdDate desc")
-    List<Product> findAllProductsForExport(
+           "and (:cateId is null or exists (select 1 from ProductCategory pc " +
+           "where pc.product = p and pc.category.id = :cateId)) " +
+           "and (:ids is null or p.id in :ids) " +
+           "order by p.createdDate desc, p.id desc")
+    Stream<Product> streamAllProductsForExport(
             @Param("status") String status,
             @Param("name") String name,
             @Param("code") String code,
             @Param("startDate") Date startDate,
             @Param("endDate") Date endDate,
-            @Param("cateId") Long cateId
+            @Param("cateId") Long cateId,
+            @Param("ids") Collection<Long> ids
     );
 
+    // Cặp (product id, category id) của các product, chỉ đọc bảng Product_Category
+    @Query("select new com.example.nodotest.Dto.Projection.ProductCategoryLink(pc.id.productId, pc.id.categoryId) " +
+           "from ProductCategory pc " +
+           "where pc.id.productId in :productIds " +
+           "order by pc.id.categoryId")
+    List<ProductCategoryLink> findCategoryLinksByProductIds(@Param("productIds") Collection<Long> productIds);
+
     // tìm tất cả ProductCategory của 1 product (kể cả status = 0)
     @Query("SELECT pc FROM ProductCategory pc " +
            "JOIN FETCH pc.category c " +
            "WHERE pc.product.id = :productId")
     List<ProductCategory> findAllByProductId(@Param("productId") Long productId);
 
+    // id các category đang gắn với product
+    @Query("select pc.category.id from ProductCategory pc where pc.product.id = :productId")
+    List<Long> findCategoryIdsByProductId(@Param("productId") Long productId);
+
+    // Gỡ nhiều liên kết product - category trong 1 câu DELETE
+    @Modifying
+    @Query("delete from ProductCategory pc " +
+           "where pc.product.id = :productId " +
+           "and pc.category.id in :categoryIds")
+    int deleteCategoryLinks(@Param("productId") Long productId,
+                            @Param("categoryIds") Collection<Long> categoryIds);
+
     // tìm ProductCategory theo productId và categoryId gòm soft delete
     @Query("SELECT pc FROM ProductCategory pc " +
            "WHERE pc.product.id = :productId " +
@@ -0,0 +1,25 @@
+package com.example.nodotest.Service;
+
+import com.example.nodotest.Config.TransactionHooks;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Phiên bản dữ liệu catalogue (product + category), tăng mỗi khi có thay đổi được commit.
+ * Cache nào lấy version làm một phần của key thì tự hết hạn khi dữ liệu đổi, không cần xoá từng entry.
+ */
+@Component
+public class CatalogVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    // Tăng version sau khi transaction hiện tại commit (rollback thì không đổi)
+    public void bumpAfterCommit() {
+        TransactionHooks.afterCommit(version::incrementAndGet);
+    }
+}
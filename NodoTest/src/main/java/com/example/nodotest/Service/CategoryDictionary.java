@@ -0,0 +1,106 @@
+package com.example.nodotest.Service;
+
+import com.example.nodotest.Config.TransactionHooks;
+import com.example.nodotest.Entity.Category;
+import com.example.nodotest.Repository.CategoryRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bảng tra category (id -> mã / tên / status) luôn nằm trong bộ nhớ, để kiểm tra category id khi tạo/sửa product
+ * và lấy tên category khi tìm kiếm/export mà không phải query bảng Category.
+ * Đọc không khoá trên 1 snapshot bất biến; mỗi lần ghi tạo snapshot mới rồi thay nguyên cả map (copy-on-write),
+ * chỉ sau khi transaction của CategoryService commit. Định kỳ nạp lại toàn bộ để bắt các thay đổi ngoài luồng đó.
+ */
+@Component
+@Slf4j
+public class CategoryDictionary {
+
+    public record Entry(Long id, String code, String name, String status) {
+
+        public boolean active() {
+            return "1".equals(status);
+        }
+    }
+
+    private final CategoryRepository categoryRepository;
+
+    private volatile Map<Long, Entry> entries = Map.of();
+
+    public CategoryDictionary(CategoryRepository categoryRepository) {
+        this.categoryRepository = categoryRepository;
+    }
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${category.dictionary.refresh-interval-ms:600000}",
+            initialDelayString = "${category.dictionary.refresh-interval-ms:600000}")
+    public synchronized void reload() {
+        Map<Long, Entry> loaded = new HashMap<>();
+        for (Category category : categoryRepository.findAll()) {
+            loaded.put(category.getId(), toEntry(category));
+        }
+        entries = Map.copyOf(loaded);
+        log.debug("Category dictionary loaded: {} categories", loaded.size());
+    }
+
+    /**
+     * Ghi lại trạng thái hiện tại của category vào dictionary sau khi transaction commit
+     * (rollback thì dictionary giữ nguyên).
+     */
+    public void putAfterCommit(Category category) {
+        Entry entry = toEntry(category);
+        TransactionHooks.afterCommit(() -> put(entry));
+    }
+
+    private synchronized void put(Entry entry) {
+        Map<Long, Entry> copy = new HashMap<>(entries);
+        copy.put(entry.id(), entry);
+        entries = Map.copyOf(copy);
+    }
+
+    public Optional<Entry> get(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(entries.get(id));
+    }
+
+    // Các id đang active trong danh sách (bỏ trùng, giữ thứ tự gửi lên)
+    public List<Long> filterActive(Collection<Long> ids) {
+        if (ids == null) {
+            return List.of();
+        }
+        Map<Long, Entry> snapshot = entries;
+        List<Long> result = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            Entry entry = id != null ? snapshot.get(id) : null;
+            if (entry != null && entry.active()) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    // Tên category nếu đang active, ngược lại null
+    public String activeName(Long id) {
+        Entry entry = id != null ? entries.get(id) : null;
+        return entry != null && entry.active() ? entry.name() : null;
+    }
+
+    public List<Entry> activeEntries() {
+        return entries.values().stream()
+                .filter(Entry::active)
+                .toList();
+    }
+
+    private Entry toEntry(Category category) {
+        return new Entry(category.getId(), category.getCategoryCode(), category.getName(), category.getStatus());
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.nodotest.Service;
 
+import com.example.nodotest.Config.SingleFlight;
+import com.example.nodotest.Config.TransactionHooks;
 import com.example.nodotest.Dto.Pagination.PagedResponse;
 import com.example.nodotest.Dto.Pagination.PaginationInfo;
 import com.example.nodotest.Dto.Request.CategoryImageRequest;
@@ -20,6 +22,8 @@ import com.example.nodotest.Mapper.CategoryImageMapper;
 import com.example.nodotest.Mapper.CategoryMapper;
 import com.example.nodotest.Repository.CategoryImageRepository;
 import com.example.nodotest.Repository.CategoryRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -28,23 +32,27 @@ import org.springframework.context.MessageSource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.sql.Date;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
+// Timer + histogram cho mọi method public (tag class / method), qua TimedAspect
+@Timed(value = "nodotest.service", histogram = true)
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
@@ -52,18 +60,42 @@ public class CategoryService {
     private final CategoryMapper categoryMapper;
     private final MessageSource messageSource;
     private final CategoryImageMapper categoryImageMapper;
+    private final ImageIngestionService imageIngestionService;
+    private final ThumbnailService thumbnailService;
+    private final CatalogVersion catalogVersion;
+    private final CategoryDictionary categoryDictionary;
+    private final TransactionTemplate transactionTemplate;
+    // Gộp các request /api/categories giống hệt nhau đang chạy cùng lúc
+    private final SingleFlight<CategorySearchKey, PagedResponse<CategoryResponse>> categorySearchFlight;
+
+    // Bộ lọc đã chuẩn hoá + trang; version đổi sau mỗi lần ghi commit => lời gọi sau commit không nhận kết quả cũ
+    private record CategorySearchKey(String name, String categoryCode, Date startDate, Date endDate,
+                                     Pageable pageable, long version) {
+    }
 
     public CategoryService(CategoryRepository categoryRepository,
                            CategoryMapper categoryMapper,
                            MessageSource messageSource,
                            CategoryImageMapper categoryImageMapper,
-                           CategoryImageRepository categoryImageRepository
+                           CategoryImageRepository categoryImageRepository,
+                           ImageIngestionService imageIngestionService,
+                           ThumbnailService thumbnailService,
+                           CatalogVersion catalogVersion,
+                           CategoryDictionary categoryDictionary,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry
     ) {
         this.categoryRepository = categoryRepository;
         this.categoryMapper = categoryMapper;
         this.messageSource = messageSource;
         this.categoryImageMapper = categoryImageMapper;
         this.categoryImageRepository = categoryImageRepository;
+        this.imageIngestionService = imageIngestionService;
+        this.thumbnailService = thumbnailService;
+        this.catalogVersion = catalogVersion;
+        this.categoryDictionary = categoryDictionary;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.categorySearchFlight = new SingleFlight<>("category.search", meterRegistry);
     }
 
     // Bai 1
@@ -84,59 +116,66 @@ public class CategoryService {
             ".jpg", ".jpeg", ".png", ".gif", ".webp"
     );
 
-    @Transactional
     public ApiResponse<CategoryResponse> createCategory(CategoryRequest requestDTO, Locale locale) {
 
         // Check category code exists
         checkCategoryCodeExists(requestDTO.getCategoryCode(), locale);
 
+        // Ghi ảnh vào staging trước khi mở transaction => transaction không giữ khoá trong lúc ghi đĩa
+        List<ImageIngestionService.StagedImage> stagedImages;
+        try {
+            stagedImages = stageImages(requestDTO.getImages(), locale);
+        } catch (IOException e) {
+            String errorMessage = messageSource.getMessage("error.category.image.save", null, locale);
+            log.error("Failed to save images for category: {}", requestDTO.getCategoryCode(), e);
+            throw new RuntimeException(errorMessage, e);
+
+        } catch (FileSizeExceededException | InvalidFileException e) {
+            log.error("Validation failed for category images: {}", requestDTO.getCategoryCode(), e);
+            throw e;
+        }
+
+        CategoryResponse response = inTransaction(stagedImages,
+                () -> createCategoryInTransaction(requestDTO, stagedImages, locale));
+
+        return new ApiResponse<>(
+                200,
+                messageSource.getMessage("category.create.success", null, locale),
+                response
+        );
+    }
+
+    private CategoryResponse createCategoryInTransaction(CategoryRequest requestDTO,
+                                                         List<ImageIngestionService.StagedImage> stagedImages,
+                                                         Locale locale) {
+        promoteAfterCommit(stagedImages);
+
         // Map DTO to Entity
         Category category = categoryMapper.toCategory(requestDTO);
 
         // Save category first để có ID
         Category savedCategory = categoryRepository.save(category);
 
-        List<String> savedFilePaths = new ArrayList<>();
-
         // Save images if provided
-        if (requestDTO.getImages() != null && requestDTO.getImages().toArray().length > 0) {
+        if (!stagedImages.isEmpty()) {
             try {
-                List<CategoryImage> categoryImages = saveImages(requestDTO.getImages(), savedCategory, locale, savedFilePaths);
+                List<CategoryImage> categoryImages = toCategoryImages(stagedImages, savedCategory);
                 // Add images to category
                 categoryImages.forEach(savedCategory::addImage);
                 categoryImageRepository.saveAll(categoryImages);
-            } catch (IOException e) {
-                // Cleanup all saved files before transaction rollback
-                cleanupFiles(savedFilePaths);
-
-                String errorMessage = messageSource.getMessage("error.category.image.save", null, locale);
-                log.error("Failed to save images for category: {}", requestDTO.getCategoryCode(), e);
-                throw new RuntimeException(errorMessage, e);
-
-            } catch (FileSizeExceededException | InvalidFileException e) {
-                // Cleanup all saved files before transaction rollback
-                cleanupFiles(savedFilePaths);
-
-                log.error("Validation failed for category images: {}", requestDTO.getCategoryCode(), e);
-                throw e;
-
-            } catch (Exception e) {
-                // Cleanup all saved files for any unexpected errors
-                cleanupFiles(savedFilePaths);
-
+            } catch (RuntimeException e) {
                 String errorMessage = messageSource.getMessage("error.category.image.save", null, locale);
                 log.error("Unexpected error saving images for category: {}", requestDTO.getCategoryCode(), e);
                 throw new RuntimeException(errorMessage, e);
             }
         }
 
-        CategoryResponse response = categoryMapper.toCategoryResponse(savedCategory);
+        // Kết quả tìm kiếm product (tên category) được cache theo version:
+        // cập nhật dictionary trước rồi mới tăng version, để cache mới không đọc tên category cũ
+        categoryDictionary.putAfterCommit(savedCategory);
+        catalogVersion.bumpAfterCommit();
 
-        return new ApiResponse<>(
-                200,
-                messageSource.getMessage("category.create.success", null, locale),
-                response
-        );
+        return categoryMapper.toCategoryResponse(savedCategory);
     }
 
     private void checkCategoryCodeExists(String categoryCode, Locale locale) {
@@ -146,22 +185,16 @@ public class CategoryService {
         }
     }
 
-    private List<CategoryImage> saveImages(List<MultipartFile> images,
-                                             Category category,
-                                             Locale locale,
-                                             List<String> savedFilePaths
-    ) throws IOException {
-        List<CategoryImage> categoryImages = new ArrayList<>();
-
-        // Create directory if not exists
-        File directory = new File(imageFolderPath);
-        if (!directory.exists()) {
-            boolean created = directory.mkdirs();
-            if (!created) {
-                throw new IOException("Cannot create upload directory");
-            }
+    // Validate rồi ghi ảnh vào staging; không có ảnh thì trả về danh sách rỗng
+    private List<ImageIngestionService.StagedImage> stageImages(List<MultipartFile> images, Locale locale)
+            throws IOException {
+        if (images == null || images.isEmpty()) {
+            return List.of();
         }
 
+        // Validate tất cả trước (tuần tự), sau đó mới ghi file song song
+        List<MultipartFile> validImages = new ArrayList<>();
+
         for (MultipartFile image : images) {
             // Skip empty files
             if (image.isEmpty()) {
@@ -195,62 +228,51 @@ public class CategoryService {
                 throw new InvalidFileException(errorMessage);
             }
 
-            // Generate unique filename
-            String uuid = UUID.randomUUID().toString();
-            String newFileName = uuid + extension;
-            String imagePath = imageFolderPath + newFileName;
+            validImages.add(image);
+        }
 
-            // Save file to disk
-            Path destinationPath = Paths.get(imagePath);
-            try {
-                Files.copy(image.getInputStream(), destinationPath);
-                savedFilePaths.add(imagePath);
-                log.debug("Image saved: {}", newFileName);
-            } catch (IOException e) {
-                log.error("Failed to save image: {}", newFileName, e);
-                throw new IOException("Failed to save image: " + originalFilename);
-            }
+        // Ghi vào thư mục staging (song song), chưa xuất hiện ở thư mục ảnh
+        return imageIngestionService.stage(validImages, imageFolderPath);
+    }
 
+    // url lưu đường dẫn chính thức ngay, file chỉ có ở đó sau khi promote
+    private List<CategoryImage> toCategoryImages(List<ImageIngestionService.StagedImage> stagedImages,
+                                                 Category category) {
+        List<CategoryImage> categoryImages = new ArrayList<>();
+        for (ImageIngestionService.StagedImage staged : stagedImages) {
             // Create CategoryImage entity
-            CategoryImageRequest imageRequestDTO = new CategoryImageRequest(originalFilename, uuid, imagePath, "1");
+            CategoryImageRequest imageRequestDTO = new CategoryImageRequest(
+                    staged.originalName(), staged.uuid(), staged.targetPath().toString(), "1");
 
             CategoryImage categoryImage = categoryImageMapper.toCategoryImage(imageRequestDTO);
+            categoryImage.setContentHash(staged.contentHash());
             categoryImage.setCategory(category);
 
-            // Save to database
-//            CategoryImage savedImage = imageRepository.save(categoryImage);
-
             categoryImages.add(categoryImage);
         }
-
         return categoryImages;
     }
 
-    private void cleanupFiles(List<String> filePaths) {
-        if (filePaths == null || filePaths.isEmpty()) {
+    // Commit => promote file staging vào thư mục ảnh rồi sinh thumbnail nền; rollback => xoá nền file staging
+    private void promoteAfterCommit(List<ImageIngestionService.StagedImage> stagedImages) {
+        if (stagedImages == null || stagedImages.isEmpty()) {
             return;
         }
+        TransactionHooks.afterCommit(() -> thumbnailService.generateAsync(
+                ThumbnailService.ImageOwner.CATEGORY, imageIngestionService.promote(stagedImages)));
+        TransactionHooks.afterRollback(() -> imageIngestionService.discardAsync(stagedImages));
+    }
 
-        log.info("Starting cleanup of {} files", filePaths.size());
-
-        for (String filePath : filePaths) {
-            try {
-                Path path = Paths.get(filePath);
-                boolean deleted = Files.deleteIfExists(path);
-
-                if (deleted) {
-                    log.info("Successfully cleaned up file: {}", filePath);
-                } else {
-                    log.warn("File not found during cleanup: {}", filePath);
-                }
-
-            } catch (IOException e) {
-                log.error("Failed to cleanup file: {}", filePath, e);
-                // Continue with other files even if one fails
+    // Chạy action trong transaction; không mở được transaction thì hook rollback chưa đăng ký => tự xoá staging
+    private <T> T inTransaction(List<ImageIngestionService.StagedImage> stagedImages, Supplier<T> action) {
+        try {
+            return transactionTemplate.execute(status -> action.get());
+        } catch (CannotCreateTransactionException e) {
+            if (stagedImages != null) {
+                imageIngestionService.discardAsync(stagedImages);
             }
+            throw e;
         }
-
-        log.info("Cleanup completed");
     }
 
     // check image type
@@ -279,10 +301,18 @@ public class CategoryService {
     }
 
     public PagedResponse<CategoryResponse> getCategories(String name, String categoryCode, Date startDate, Date endDate, Pageable pageable) {
-        name = sanitizeSearchParam(name);
-        categoryCode = sanitizeSearchParam(categoryCode);
+        String normalizedName = sanitizeSearchParam(name);
+        String normalizedCode = sanitizeSearchParam(categoryCode);
         validateDateRange(startDate, endDate);
 
+        // Các lời gọi cùng bộ lọc đang chạy song song dùng chung 1 lần query (kết quả chỉ đọc, không sửa)
+        CategorySearchKey key = new CategorySearchKey(normalizedName, normalizedCode, startDate, endDate,
+                pageable, catalogVersion.current());
+        return categorySearchFlight.execute(key,
+                () -> searchCategories(normalizedName, normalizedCode, startDate, endDate, pageable));
+    }
+
+    private PagedResponse<CategoryResponse> searchCategories(String name, String categoryCode, Date startDate, Date endDate, Pageable pageable) {
         Page<Category> categories = categoryRepository.getAllCategoriesByStatus("1", name, categoryCode, startDate, endDate, pageable);
         List<Category> categoryList = new ArrayList<>(categories.getContent());
 
@@ -436,8 +466,31 @@ public class CategoryService {
 
     // Bai 3: update product
 
-    @Transactional
     public CategoryResponse updateCategory(Long id, CategoryRequest req, Locale locale) {
+        // Ghi ảnh mới vào staging trước khi mở transaction
+        List<ImageIngestionService.StagedImage> stagedImages;
+        try {
+            stagedImages = stageImages(req.getImages(), locale);
+        } catch (FileSizeExceededException | InvalidFileException e) {
+            // Như cũ: ảnh không hợp lệ thì vẫn cập nhật thông tin category, giữ nguyên ảnh
+            log.error("Unexpected error updating category: {}", id, e);
+            stagedImages = null;
+        } catch (IOException e) {
+            String errorMessage = messageSource.getMessage("error.category.image.save", null, locale);
+            log.error("Failed to save images for category update: {}", id, e);
+            throw new RuntimeException(errorMessage, e);
+        }
+
+        List<ImageIngestionService.StagedImage> images = stagedImages;
+        return inTransaction(images, () -> updateCategoryInTransaction(id, req, images, locale));
+    }
+
+    // stagedImages null => không đổi ảnh (bỏ qua cả replaceUuids)
+    private CategoryResponse updateCategoryInTransaction(Long id, CategoryRequest req,
+                                                         List<ImageIngestionService.StagedImage> stagedImages,
+                                                         Locale locale) {
+        promoteAfterCommit(stagedImages);
+
         // only allow update category with status = 1
         Category categoryExist = categoryRepository.findByIdAndStatus(id, "1")
                 .orElseThrow(() -> new CategoryNotFoundException("category.notfound"));
@@ -454,96 +507,61 @@ public class CategoryService {
         categoryExist = categoryRepository.save(categoryExist);
         System.out.println("cagory id after save: " + categoryExist.getId());
 
-        List<String> savedFilePaths = new ArrayList<>();
-
-        List<CategoryImage> softDeleteImages = new ArrayList<>();
-
-        try {
-            // in case there are a list of old images uuid that needs to be replaced
-            if (req.getReplaceUuids() != null && !req.getReplaceUuids().isEmpty()) {
-                for (String uuidReplace : req.getReplaceUuids()) {
-                    Optional<CategoryImage> imageOptional = categoryImageRepository
-                            .findByCategoryIdAndStatus(id, uuidReplace, "1");
-                    // mark old images as no longer use
-                    if (imageOptional.isPresent()) {
-                        CategoryImage imageToUpdate = imageOptional.get();
-                        imageToUpdate.setStatus("0"); // soft delete
-                        categoryImageRepository.save(imageToUpdate);
-                        // track for potential rollback
-                        softDeleteImages.add(imageToUpdate);
-                        log.debug("Soft deleted image with uuid: {}", uuidReplace);
+        if (stagedImages != null) {
+            try {
+                // in case there are a list of old images uuid that needs to be replaced
+                if (req.getReplaceUuids() != null && !req.getReplaceUuids().isEmpty()) {
+                    for (String uuidReplace : req.getReplaceUuids()) {
+                        Optional<CategoryImage> imageOptional = categoryImageRepository
+                                .findByCategoryIdAndStatus(id, uuidReplace, "1");
+                        // mark old images as no longer use (rollback => transaction tự khôi phục)
+                        if (imageOptional.isPresent()) {
+                            CategoryImage imageToUpdate = imageOptional.get();
+                            imageToUpdate.setStatus("0"); // soft delete
+                            categoryImageRepository.save(imageToUpdate);
+                            log.debug("Soft deleted image with uuid: {}", uuidReplace);
+                        }
                     }
                 }
-            }
 
-            // if there is a new image uploaded, process it
-            if (req.getImages() != null && !req.getImages().isEmpty()) {
-                List<CategoryImage> newImages = saveImages(req.getImages(), categoryExist, locale, savedFilePaths);
-                // Gán category_id cho ảnh mới (set category cho từng ảnh mới)
-                for (CategoryImage img : newImages) {
-                    img.setStatus("1");
-                    img.setCategory(categoryExist);  // Set category_id cho ảnh
-                    categoryImageRepository.save(img);
+                // if there is a new image uploaded, process it
+                if (!stagedImages.isEmpty()) {
+                    List<CategoryImage> newImages = toCategoryImages(stagedImages, categoryExist);
+                    // Gán category_id cho ảnh mới (set category cho từng ảnh mới)
+                    for (CategoryImage img : newImages) {
+                        img.setStatus("1");
+                        img.setCategory(categoryExist);  // Set category_id cho ảnh
+                        categoryImageRepository.save(img);
+                    }
+                    categoryExist.getImages().addAll(newImages);
                 }
-                categoryExist.getImages().addAll(newImages);
-//                categoryImageRepository.saveAll(newImages);
-//                categoryExist.getImages().addAll(newImages);
-
+            } catch (RuntimeException e) {
+                String errorMessage = messageSource.getMessage("general.error", null, locale);
+                log.error("Unexpected error updating category: {}", id, e);
+                throw new RuntimeException(errorMessage, e);
             }
-        } catch (FileSizeExceededException | InvalidFileException e) {
-            cleanupFiles(savedFilePaths);
-            restoreSoftDeletedImages(softDeleteImages);
-            log.error("Unexpected error updating category: {}", id, e);
-        } catch (IOException e) {
-            cleanupFiles(savedFilePaths);
-
-            restoreSoftDeletedImages(softDeleteImages);
-
-            String errorMessage = messageSource.getMessage("error.category.image.save", null, locale);
-            log.error("Failed to save images for category update: {}", id, e);
-            throw new RuntimeException(errorMessage, e);
-        } catch (Exception e) {
-            // Cleanup newly saved files
-            cleanupFiles(savedFilePaths);
-
-            // Restore soft deleted images
-            restoreSoftDeletedImages(softDeleteImages);
-
-            String errorMessage = messageSource.getMessage("general.error", null, locale);
-            log.error("Unexpected error updating category: {}", id, e);
-            throw new RuntimeException(errorMessage, e);
         }
         Category updatedCategory = categoryRepository.save(categoryExist);
+        categoryDictionary.putAfterCommit(updatedCategory);
+        catalogVersion.bumpAfterCommit();
         return categoryMapper.toCategoryResponse(updatedCategory);
     }
 
-    private void restoreSoftDeletedImages(List<CategoryImage> softDeletedImages) {
-        if (softDeletedImages == null || softDeletedImages.isEmpty()) {
-            return;
-        }
-
-        log.info("Restoring {} soft deleted images", softDeletedImages.size());
-
-        for (CategoryImage image : softDeletedImages) {
-            try {
-                image.setStatus("1"); // Restore to active
-                categoryImageRepository.save(image);
-                log.debug("Restored image with uuid: {}", image.getUuid());
-            } catch (Exception e) {
-                log.error("Failed to restore image with uuid: {}", image.getUuid(), e);
-                // Continue with other images even if one fails
-            }
-        }
-
-        log.info("Image restoration completed");
-    }
-
     // Bai 4
     // Constants
     private static final int MAX_EXCEL_ROWS = 1_000_000; // Excel limit ~1M rows, để an toàn
     private static final String EXCEL_FILENAME_PREFIX = "Categories_Export_";
+    private static final int PROGRESS_STEP = 1000; // báo tiến độ mỗi 1000 dòng
 
     public byte[] exportCategoriesToExcel(String name, String categoryCode, Date startDate, Date endDate) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        exportCategoriesToExcel(name, categoryCode, startDate, endDate, byteArrayOutputStream, rows -> { });
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    // Ghi thẳng ra out (file của export job); progress nhận số dòng đã ghi
+    public void exportCategoriesToExcel(String name, String categoryCode, Date startDate, Date endDate,
+                                        OutputStream out, LongConsumer progress) throws IOException {
         // Validation đầu vào
         validateExportParams(startDate, endDate);
 
@@ -562,8 +580,7 @@ public class CategoryService {
         }
 
         // Sử dụng try-with-resources để đảm bảo đóng workbook
-        try (Workbook workbook = new XSSFWorkbook();
-             ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
+        try (Workbook workbook = new XSSFWorkbook()) {
 
             Sheet sheet = workbook.createSheet("Categories");
 
@@ -576,14 +593,14 @@ public class CategoryService {
             createHeader(sheet, headerStyle);
 
             // Điền dữ liệu
-            fillData(sheet, categoryList, dateStyle, textStyle);
+            fillData(sheet, categoryList, dateStyle, textStyle, progress);
 
             // Auto-size columns
             autoSizeColumns(sheet, 8);
 
             // Write to output stream
-            workbook.write(byteArrayOutputStream);
-            return byteArrayOutputStream.toByteArray();
+            workbook.write(out);
+            out.flush();
 
         } catch (Exception e) {
             throw new ExcelExportException("Lỗi khi xuất file Excel: " + e.getMessage(), e);
@@ -610,7 +627,8 @@ public class CategoryService {
     }
 
     // Điền dữ liệu với null safety
-    private void fillData(Sheet sheet, List<Category> categoryList, CellStyle dateStyle, CellStyle textStyle) {
+    private void fillData(Sheet sheet, List<Category> categoryList, CellStyle dateStyle, CellStyle textStyle,
+                          LongConsumer progress) {
         int rowNum = 1;
         SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
 
@@ -646,7 +664,12 @@ public class CategoryService {
             createCell(row, 7,
                     category.getModifiedBy() != null ? category.getModifiedBy() : "N/A",
                     textStyle);
+
+            if ((rowNum - 1) % PROGRESS_STEP == 0) {
+                progress.accept(rowNum - 1);
+            }
         }
+        progress.accept(rowNum - 1);
     }
 
     // Helper methods
@@ -734,6 +757,8 @@ public class CategoryService {
         categoryExist.setStatus("0");
         categoryExist.setModifiedDate(new java.sql.Date(System.currentTimeMillis()));
         categoryRepository.save(categoryExist);
+        categoryDictionary.putAfterCommit(categoryExist);
+        catalogVersion.bumpAfterCommit();
         return messageSource.getMessage("delete.success", null, locale);
     }
 }
@@ -0,0 +1,245 @@
+package com.example.nodotest.Service;
+
+import com.example.nodotest.Dto.Response.ExportJobResponse;
+import com.example.nodotest.Exception.ExportJobNotFoundException;
+import com.example.nodotest.Exception.ExportLimitExceededException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Chạy export Excel (product / category) trên pool riêng thay vì trên luồng request.
+ * Client nhận jobId, poll trạng thái (số dòng đã ghi) rồi tải file đã spool ra đĩa.
+ * Mỗi user chỉ được chạy tối đa export.job.max-per-user job cùng lúc; job xong được giữ
+ * trong export.job.ttl rồi bị xoá cả trạng thái lẫn file.
+ */
+@Service
+@Slf4j
+public class ExportJobService {
+
+    public enum ExportType {
+        PRODUCT, CATEGORY
+    }
+
+    public enum JobStatus {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    // Bộ lọc giống các endpoint /export đồng bộ
+    public record ExportFilter(String name, String code, Date startDate, Date endDate, Long categoryId) {
+    }
+
+    private static final class ExportJob {
+        private final String id;
+        private final String owner;
+        private final ExportType type;
+        private final Instant createdAt = Instant.now();
+        private final AtomicLong rowsWritten = new AtomicLong();
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile Path file;
+        private volatile String error;
+        private volatile Instant finishedAt;
+
+        private ExportJob(String id, String owner, ExportType type) {
+            this.id = id;
+            this.owner = owner;
+            this.type = type;
+        }
+    }
+
+    private final ProductService productService;
+    private final CategoryService categoryService;
+    private final ThreadPoolExecutor executor;
+    private final Path jobDir;
+    private final int maxJobsPerUser;
+    private final Duration ttl;
+
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    // Số job QUEUED/RUNNING của từng user
+    private final Map<String, Integer> activeJobsByOwner = new ConcurrentHashMap<>();
+
+    public ExportJobService(ProductService productService,
+                            CategoryService categoryService,
+                            @Value("${export.job.dir:exports}") String jobDir,
+                            @Value("${export.job.parallelism:2}") int parallelism,
+                            @Value("${export.job.queue-capacity:20}") int queueCapacity,
+                            @Value("${export.job.max-per-user:2}") int maxJobsPerUser,
+                            @Value("${export.job.ttl:1h}") Duration ttl) throws IOException {
+        this.productService = productService;
+        this.categoryService = categoryService;
+        this.jobDir = Files.createDirectories(Paths.get(jobDir));
+        this.maxJobsPerUser = maxJobsPerUser;
+        this.ttl = ttl;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                parallelism, parallelism,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "export-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+        deleteOrphanFiles();
+    }
+
+    // Trạng thái job chỉ giữ trong bộ nhớ => file của lần chạy trước không còn ai tải được
+    private void deleteOrphanFiles() throws IOException {
+        try (Stream<Path> files = Files.list(jobDir)) {
+            files.filter(file -> file.getFileName().toString().matches(".+\\.xlsx(\\.part)?"))
+                    .forEach(this::deleteQuietly);
+        }
+    }
+
+    public ExportJobResponse submit(ExportType type, ExportFilter filter, String owner) {
+        acquireSlot(owner);
+
+        ExportJob job = new ExportJob(UUID.randomUUID().toString(), owner, type);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job, filter));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            releaseSlot(owner);
+            throw new ExportLimitExceededException("Export queue is full");
+        }
+        log.info("Export job {} ({}) submitted by {}", job.id, type, owner);
+        return toResponse(job);
+    }
+
+    public ExportJobResponse getJob(String jobId, String owner) {
+        return toResponse(findJob(jobId, owner));
+    }
+
+    /**
+     * File kết quả của job đã xong; job chưa xong hoặc lỗi => null.
+     */
+    public Path getResultFile(String jobId, String owner) {
+        ExportJob job = findJob(jobId, owner);
+        return job.status == JobStatus.DONE ? job.file : null;
+    }
+
+    private ExportJob findJob(String jobId, String owner) {
+        ExportJob job = jobs.get(jobId);
+        // Không cho xem job của user khác, trả về như không tồn tại
+        if (job == null || !job.owner.equals(owner)) {
+            throw new ExportJobNotFoundException("Export job not found: " + jobId);
+        }
+        return job;
+    }
+
+    // compute chạy nguyên tử theo từng key nên kiểm tra + tăng không bị chen ngang
+    private void acquireSlot(String owner) {
+        activeJobsByOwner.compute(owner, (key, active) -> {
+            int current = active == null ? 0 : active;
+            if (current >= maxJobsPerUser) {
+                throw new ExportLimitExceededException("Too many running export jobs for: " + owner);
+            }
+            return current + 1;
+        });
+    }
+
+    private void releaseSlot(String owner) {
+        activeJobsByOwner.computeIfPresent(owner, (key, active) -> active <= 1 ? null : active - 1);
+    }
+
+    private void run(ExportJob job, ExportFilter filter) {
+        job.status = JobStatus.RUNNING;
+        Path target = jobDir.resolve(job.id + ".xlsx");
+        Path temp = jobDir.resolve(job.id + ".xlsx.part");
+        try {
+            LongConsumer progress = job.rowsWritten::set;
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                if (job.type == ExportType.PRODUCT) {
+                    productService.exportProductsToExcel(filter.name(), filter.code(), filter.startDate(),
+                            filter.endDate(), filter.categoryId(), out, progress);
+                } else {
+                    categoryService.exportCategoriesToExcel(filter.name(), filter.code(), filter.startDate(),
+                            filter.endDate(), out, progress);
+                }
+            }
+            // Chỉ đổi tên khi ghi xong, không bao giờ tải được file dở
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            job.file = target;
+            job.status = JobStatus.DONE;
+            log.info("Export job {} done, {} rows", job.id, job.rowsWritten.get());
+        } catch (Exception e) {
+            log.error("Export job {} failed", job.id, e);
+            deleteQuietly(temp);
+            job.error = e.getMessage();
+            job.status = JobStatus.FAILED;
+        } finally {
+            job.finishedAt = Instant.now();
+            releaseSlot(job.owner);
+        }
+    }
+
+    // Dọn job (và file) đã kết thúc quá ttl
+    @Scheduled(fixedDelayString = "${export.job.purge-interval-ms:300000}")
+    public void purgeExpiredJobs() {
+        Instant expiredBefore = Instant.now().minus(ttl);
+        jobs.values().removeIf(job -> {
+            if (job.finishedAt == null || job.finishedAt.isAfter(expiredBefore)) {
+                return false;
+            }
+            if (job.file != null) {
+                deleteQuietly(job.file);
+            }
+            log.debug("Purged export job {}", job.id);
+            return true;
+        });
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete export file: {}", path, e);
+        }
+    }
+
+    private ExportJobResponse toResponse(ExportJob job) {
+        String downloadUrl = job.status == JobStatus.DONE ? "/api/export-jobs/" + job.id + "/file" : null;
+        return new ExportJobResponse(
+                job.id,
+                job.type.name(),
+                job.status.name(),
+                job.rowsWritten.get(),
+                downloadUrl,
+                job.error,
+                job.createdAt,
+                job.finishedAt
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,453 @@
+package com.example.nodotest.Service;
+
+import com.example.nodotest.Repository.CategoryImageRepository;
+import com.example.nodotest.Repository.ProductImageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Ghi file ảnh upload song song (giới hạn số luồng bằng image.upload.parallelism).
+ * File được lưu theo nội dung: tên file = SHA-256 của bytes + đuôi file, nên cùng 1 ảnh upload
+ * cho nhiều product/category chỉ có 1 file trên đĩa (upload trùng chỉ thêm 1 dòng metadata).
+ * File mới được ghi ra file tạm trong cùng thư mục rồi move atomic sang tên chính thức,
+ * nên không bao giờ có file ghi dở nằm ở đường dẫn lưu trong DB.
+ * Số lượng tham chiếu tới 1 file = số dòng ProductImage/CategoryImage có cùng content_hash và url.
+ * Ngoài ra có luồng stage/promote: ghi file vào thư mục .staging trước khi mở transaction,
+ * chỉ move sang thư mục chính sau khi commit (rollback thì xoá nền), để transaction không phải chờ ghi đĩa.
+ * File chính thức không bao giờ bị xoá ngay khi rollback: request khác có thể đã dùng lại file đó nhưng chưa commit.
+ * Chúng được đưa vào danh sách chờ và chỉ bị xoá sau image.orphan.grace-period nếu vẫn không còn dòng nào tham chiếu
+ * (mỗi lần dùng lại file sẽ cập nhật mtime, file mới được dùng lại trong khoảng đó cũng không bị xoá).
+ * Danh sách chờ chỉ nằm trong bộ nhớ, nên lúc khởi động quét lại các thư mục ảnh để không bỏ sót file của lần chạy trước.
+ */
+@Service
+@Slf4j
+public class ImageIngestionService {
+
+    /**
+     * created = true nếu file vừa được ghi mới, false nếu đã có file cùng nội dung (dedup).
+     */
+    public record StoredImage(String originalName, String uuid, Path path, String contentHash, boolean created) {
+    }
+
+    /**
+     * Ảnh đã ghi vào thư mục staging, chưa được dùng. targetPath là đường dẫn chính thức (lưu vào DB ngay),
+     * stagedPath null nếu đã có sẵn file cùng nội dung ở targetPath (không cần promote).
+     */
+    public record StagedImage(String originalName, String uuid, Path stagedPath, Path targetPath, String contentHash) {
+    }
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    // Thư mục con của thư mục ảnh => cùng filesystem, promote bằng move atomic
+    private static final String STAGING_FOLDER = ".staging";
+
+    private final ThreadPoolExecutor executor;
+    private final ProductImageRepository productImageRepository;
+    private final CategoryImageRepository categoryImageRepository;
+    private final Duration orphanGracePeriod;
+    private final List<Path> imageFolders;
+    // file có thể không còn được dùng -> thời điểm sớm nhất được kiểm tra để xoá
+    private final ConcurrentMap<Path, Instant> orphanCandidates = new ConcurrentHashMap<>();
+
+    public ImageIngestionService(@Value("${image.upload.parallelism:4}") int parallelism,
+                                 @Value("${image.orphan.grace-period:10m}") Duration orphanGracePeriod,
+                                 @Value("${image.upload.product}") String productFolder,
+                                 @Value("${image.upload.dir}") String categoryFolder,
+                                 ProductImageRepository productImageRepository,
+                                 CategoryImageRepository categoryImageRepository) {
+        this.productImageRepository = productImageRepository;
+        this.categoryImageRepository = categoryImageRepository;
+        this.orphanGracePeriod = orphanGracePeriod;
+        this.imageFolders = List.of(Paths.get(productFolder), Paths.get(categoryFolder));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                parallelism, parallelism,
+                60L, TimeUnit.SECONDS,
+                // hàng đợi có giới hạn, đầy thì luồng request tự ghi (back-pressure)
+                new ArrayBlockingQueue<>(parallelism * 16),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-ingest-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Ghi các ảnh (đã validate) vào folderPath.
+     * Chỉ đường dẫn các file được tạo mới mới được thêm vào savedFilePaths (kể cả khi có file khác lỗi)
+     * để service gọi cleanupFiles như trước (xoá trễ qua deleteWhenUnreferenced).
+     */
+    public List<StoredImage> store(List<MultipartFile> images, String folderPath, List<String> savedFilePaths) throws IOException {
+        Path folder = Paths.get(folderPath);
+        Files.createDirectories(folder);
+
+        List<Future<StoredImage>> futures = new ArrayList<>(images.size());
+        for (MultipartFile image : images) {
+            futures.add(executor.submit(() -> writeImage(image, folder)));
+        }
+
+        List<StoredImage> storedImages = new ArrayList<>(images.size());
+        // 2 ảnh giống nhau trong cùng request chỉ ghi nhận 1 lần
+        Set<String> createdPaths = new LinkedHashSet<>();
+        IOException failure = null;
+
+        // Chờ tất cả xong để không còn file nào đang ghi khi caller cleanup
+        for (Future<StoredImage> future : futures) {
+            try {
+                StoredImage stored = future.get();
+                storedImages.add(stored);
+                if (stored.created()) {
+                    createdPaths.add(stored.path().toString());
+                }
+            } catch (ExecutionException e) {
+                IOException cause = e.getCause() instanceof IOException io
+                        ? io
+                        : new IOException("Failed to save image", e.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new InterruptedIOException("Interrupted while saving images");
+            }
+        }
+
+        savedFilePaths.addAll(createdPaths);
+
+        if (failure != null) {
+            throw failure;
+        }
+        return storedImages;
+    }
+
+    /**
+     * Ghi các ảnh (đã validate) vào folderPath/.staging, gọi trước khi mở transaction.
+     * Lỗi 1 ảnh => xoá các file đã stage của lần gọi này rồi ném lỗi.
+     */
+    public List<StagedImage> stage(List<MultipartFile> images, String folderPath) throws IOException {
+        Path folder = Paths.get(folderPath);
+        Path staging = Files.createDirectories(folder.resolve(STAGING_FOLDER));
+
+        List<Future<StagedImage>> futures = new ArrayList<>(images.size());
+        for (MultipartFile image : images) {
+            futures.add(executor.submit(() -> stageImage(image, folder, staging)));
+        }
+
+        List<StagedImage> stagedImages = new ArrayList<>(images.size());
+        IOException failure = null;
+        for (Future<StagedImage> future : futures) {
+            try {
+                stagedImages.add(future.get());
+            } catch (ExecutionException e) {
+                IOException cause = e.getCause() instanceof IOException io
+                        ? io
+                        : new IOException("Failed to stage image", e.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                discardAsync(stagedImages);
+                throw new InterruptedIOException("Interrupted while staging images");
+            }
+        }
+
+        if (failure != null) {
+            discardAsync(stagedImages);
+            throw failure;
+        }
+        return stagedImages;
+    }
+
+    /**
+     * Chuyển file staging sang đường dẫn chính thức, gọi sau khi transaction commit (chỉ là rename).
+     * Trả về danh sách StoredImage để sinh thumbnail như luồng store.
+     */
+    public List<StoredImage> promote(List<StagedImage> stagedImages) {
+        List<StoredImage> storedImages = new ArrayList<>(stagedImages.size());
+        for (StagedImage staged : stagedImages) {
+            boolean created = false;
+            try {
+                if (staged.stagedPath() != null) {
+                    if (Files.exists(staged.targetPath())) {
+                        // Request khác (hoặc ảnh trùng trong cùng request) đã promote cùng nội dung
+                        Files.deleteIfExists(staged.stagedPath());
+                        markReused(staged.targetPath());
+                    } else {
+                        Files.move(staged.stagedPath(), staged.targetPath(), StandardCopyOption.ATOMIC_MOVE);
+                        created = true;
+                    }
+                }
+            } catch (IOException e) {
+                // DB đã commit, không rollback được nữa => chỉ log để xử lý tay
+                log.error("Failed to promote staged image {} to {}", staged.stagedPath(), staged.targetPath(), e);
+                continue;
+            }
+            storedImages.add(new StoredImage(staged.originalName(), staged.uuid(), staged.targetPath(),
+                    staged.contentHash(), created));
+        }
+        return storedImages;
+    }
+
+    // Xoá nền các file staging (transaction rollback hoặc stage lỗi giữa chừng)
+    public void discardAsync(List<StagedImage> stagedImages) {
+        List<Path> paths = stagedImages.stream()
+                .map(StagedImage::stagedPath)
+                .filter(Objects::nonNull)
+                .toList();
+        if (paths.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> {
+            for (Path path : paths) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("Failed to discard staged image: {}", path, e);
+                }
+            }
+            log.debug("Discarded {} staged images", paths.size());
+        });
+    }
+
+    /**
+     * Đánh dấu các file vừa ghi của 1 request bị rollback / lỗi: không xoá ngay,
+     * sweepOrphans xoá sau khoảng grace period nếu lúc đó không còn dòng ảnh nào tham chiếu.
+     */
+    public void deleteWhenUnreferenced(Collection<String> filePaths) {
+        Instant due = Instant.now().plus(orphanGracePeriod);
+        for (String filePath : filePaths) {
+            orphanCandidates.put(Paths.get(filePath), due);
+        }
+        log.debug("Scheduled {} files for orphan check at {}", filePaths.size(), due);
+    }
+
+    /**
+     * Khởi động lại thì mất danh sách chờ: coi mọi file lưu theo hash là ứng viên (sweep chỉ xoá file không còn
+     * dòng nào tham chiếu, nên chỉ tốn 1 lần đếm cho mỗi file), file tạm / staging còn sót quá grace period thì xoá luôn.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rescanOrphans() {
+        Instant due = Instant.now().plus(orphanGracePeriod);
+        FileTime cutoff = FileTime.from(Instant.now().minus(orphanGracePeriod));
+        int candidates = 0;
+        for (Path folder : imageFolders) {
+            if (!Files.isDirectory(folder)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.list(folder)) {
+                for (Path path : files.filter(Files::isRegularFile).toList()) {
+                    String fileName = path.getFileName().toString();
+                    if (fileName.startsWith(".upload-")) {
+                        deleteIfOlder(path, cutoff);
+                    } else if (extractContentHash(fileName) != null && orphanCandidates.putIfAbsent(path, due) == null) {
+                        candidates++;
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Failed to scan image folder: {}", folder, e);
+            }
+
+            Path staging = folder.resolve(STAGING_FOLDER);
+            if (Files.isDirectory(staging)) {
+                try (Stream<Path> files = Files.list(staging)) {
+                    files.forEach(path -> deleteIfOlder(path, cutoff));
+                } catch (IOException e) {
+                    log.warn("Failed to scan staging folder: {}", staging, e);
+                }
+            }
+        }
+        log.info("Scheduled {} stored image files for orphan check at {}", candidates, due);
+    }
+
+    private void deleteIfOlder(Path path, FileTime cutoff) {
+        try {
+            if (Files.getLastModifiedTime(path).compareTo(cutoff) < 0) {
+                Files.deleteIfExists(path);
+                log.info("Deleted leftover temporary image file: {}", path);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete leftover temporary image file: {}", path, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${image.orphan.sweep-interval-ms:60000}")
+    public void sweepOrphans() {
+        Instant now = Instant.now();
+        FileTime cutoff = FileTime.from(now.minus(orphanGracePeriod));
+        for (Path path : List.copyOf(orphanCandidates.keySet())) {
+            Instant due = orphanCandidates.get(path);
+            if (due == null || due.isAfter(now)) {
+                continue;
+            }
+            try {
+                if (!Files.exists(path)) {
+                    orphanCandidates.remove(path, due);
+                } else if (Files.getLastModifiedTime(path).compareTo(cutoff) > 0) {
+                    // vừa có request dùng lại file, chờ thêm 1 grace period
+                    orphanCandidates.replace(path, due, now.plus(orphanGracePeriod));
+                } else if (isReferenced(path.toString())) {
+                    orphanCandidates.remove(path, due);
+                } else {
+                    Files.deleteIfExists(path);
+                    orphanCandidates.remove(path, due);
+                    log.info("Deleted orphan image file: {}", path);
+                }
+            } catch (IOException | RuntimeException e) {
+                // giữ lại, lần sweep sau thử tiếp
+                log.warn("Failed to check orphan image file: {}", path, e);
+            }
+        }
+    }
+
+    /**
+     * Kiểm tra file còn được dòng ảnh nào (đã commit) tham chiếu không, dùng trước khi xoá file.
+     * Chỉ gọi từ sweepOrphans (thread scheduler, không có transaction): mỗi câu đếm chạy transaction riêng
+     * của repository nên chỉ thấy dữ liệu đã commit.
+     */
+    private boolean isReferenced(String filePath) {
+        String contentHash = extractContentHash(filePath);
+        if (contentHash == null) {
+            return false;
+        }
+        return productImageRepository.countByContentHashAndUrl(contentHash, filePath) > 0
+               || categoryImageRepository.countByContentHashAndUrl(contentHash, filePath) > 0;
+    }
+
+    private StoredImage writeImage(MultipartFile image, Path folder) throws IOException {
+        String originalName = image.getOriginalFilename();
+        // uuid vẫn là định danh riêng của từng dòng ảnh, tên file thì theo nội dung
+        String uuid = UUID.randomUUID().toString();
+
+        // Lượt 1: tính SHA-256 dạng stream, không giữ cả file trong bộ nhớ
+        String contentHash = hash(image);
+        String newFileName = contentHash + getFileExtension(originalName).toLowerCase();
+        Path destination = folder.resolve(newFileName);
+
+        if (Files.exists(destination)) {
+            log.debug("Image content already stored, reusing: {}", newFileName);
+            markReused(destination);
+            return new StoredImage(originalName, uuid, destination, contentHash, false);
+        }
+
+        // Lượt 2: chỉ ghi khi chưa có file cùng nội dung
+        Path temp = Files.createTempFile(folder, ".upload-", ".tmp");
+        try {
+            try (InputStream in = image.getInputStream()) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            // Nếu request khác vừa ghi cùng nội dung thì move đè lên file giống hệt, vẫn an toàn
+            Files.move(temp, destination, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            log.error("Failed to save image: {}", newFileName, e);
+            throw new IOException("Failed to save image: " + originalName, e);
+        }
+
+        log.debug("Image saved: {}", newFileName);
+        return new StoredImage(originalName, uuid, destination, contentHash, true);
+    }
+
+    private StagedImage stageImage(MultipartFile image, Path folder, Path staging) throws IOException {
+        String originalName = image.getOriginalFilename();
+        String uuid = UUID.randomUUID().toString();
+
+        String contentHash = hash(image);
+        Path target = folder.resolve(contentHash + getFileExtension(originalName).toLowerCase());
+        if (Files.exists(target)) {
+            log.debug("Image content already stored, reusing: {}", target.getFileName());
+            markReused(target);
+            return new StagedImage(originalName, uuid, null, target, contentHash);
+        }
+
+        Path staged = staging.resolve(uuid + ".tmp");
+        try (InputStream in = image.getInputStream()) {
+            Files.copy(in, staged, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(staged);
+            log.error("Failed to stage image: {}", originalName, e);
+            throw new IOException("Failed to save image: " + originalName, e);
+        }
+        return new StagedImage(originalName, uuid, staged, target, contentHash);
+    }
+
+    // Cập nhật mtime để sweepOrphans không xoá file đang được request chưa commit dùng lại
+    private void markReused(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            log.warn("Failed to touch reused image: {}", path, e);
+        }
+    }
+
+    private String hash(MultipartFile image) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " not available", e);
+        }
+        try (InputStream in = new DigestInputStream(image.getInputStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Tên file dạng <sha256>.<ext>, file cũ (tên uuid) thì không có hash
+    private String extractContentHash(String filePath) {
+        String fileName = Paths.get(filePath).getFileName().toString();
+        int idx = fileName.indexOf('.');
+        String name = idx == -1 ? fileName : fileName.substring(0, idx);
+        return name.length() == 64 ? name : null;
+    }
+
+    private String getFileExtension(String filename) {
+        int idx = filename.lastIndexOf('.');
+        return idx == -1 ? "" : filename.substring(idx);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
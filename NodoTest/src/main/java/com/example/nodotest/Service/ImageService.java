@@ -0,0 +1,66 @@
+package com.example.nodotest.Service;
+
+import com.example.nodotest.Dto.Projection.ImageFileRow;
+import com.example.nodotest.Exception.ImageNotFoundException;
+import com.example.nodotest.Repository.CategoryImageRepository;
+import com.example.nodotest.Repository.ProductImageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Paths;
+
+/**
+ * Tìm file ảnh (product hoặc category) theo uuid để controller trả về, kèm ảnh thu nhỏ nếu đã sinh.
+ */
+@Service
+@Slf4j
+public class ImageService {
+
+    public static final String SIZE_ORIGINAL = "original";
+    public static final String SIZE_SMALL = "small";
+    public static final String SIZE_MEDIUM = "medium";
+
+    private final ProductImageRepository productImageRepository;
+    private final CategoryImageRepository categoryImageRepository;
+
+    public ImageService(ProductImageRepository productImageRepository,
+                        CategoryImageRepository categoryImageRepository) {
+        this.productImageRepository = productImageRepository;
+        this.categoryImageRepository = categoryImageRepository;
+    }
+
+    /**
+     * variant là kích thước thực sự được trả: chưa sinh xong thumbnail thì trả ảnh gốc (variant = "original").
+     */
+    public record ImageFile(Resource resource, String variant) {
+    }
+
+    @Transactional(readOnly = true)
+    public ImageFile loadImage(String uuid, String size) {
+        ImageFileRow files = productImageRepository.findFilesByUuidAndStatus(uuid, "1")
+                .or(() -> categoryImageRepository.findFilesByUuidAndStatus(uuid, "1"))
+                .orElseThrow(() -> new ImageNotFoundException("Image not found: " + uuid));
+
+        String derivativePath = switch (size) {
+            case SIZE_SMALL -> files.thumbnailPath();
+            case SIZE_MEDIUM -> files.mediumPath();
+            default -> null;
+        };
+        if (derivativePath != null) {
+            Resource derivative = new FileSystemResource(Paths.get(derivativePath));
+            if (derivative.isReadable()) {
+                return new ImageFile(derivative, size);
+            }
+        }
+
+        Resource resource = new FileSystemResource(Paths.get(files.url()));
+        if (!resource.isReadable()) {
+            log.warn("Image {} points to missing file: {}", uuid, files.url());
+            throw new ImageNotFoundException("Image file not found: " + uuid);
+        }
+        return new ImageFile(resource, SIZE_ORIGINAL);
+    }
+}
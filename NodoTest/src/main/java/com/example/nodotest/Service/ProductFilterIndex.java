@@ -0,0 +1,229 @@
+package com.example.nodotest.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index bitmap nén (RoaringBitmap) trong bộ nhớ cho các điều kiện lọc product lặp lại ở mọi query:
+ * status, category (theo Product_Category) và ngày tạo (mỗi ngày 1 bitmap).
+ * Tổ hợp điều kiện được tính bằng AND/OR trên bitmap, sau đó DB chỉ cần đọc các id còn lại theo khoá chính.
+ * Build lúc khởi động, sau đó cập nhật từng product từ các luồng ghi (sau commit).
+ * Cập nhật tới trong lúc rebuild chờ write lock rồi áp dụng sau khi build xong, nên không bị mất
+ * thay đổi commit sau lúc rebuild đọc bảng.
+ * createdDate không đổi sau khi tạo nên bucket ngày chỉ thêm, không phải gỡ.
+ */
+@Component
+@Slf4j
+public class ProductFilterIndex {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, RoaringBitmap> byStatus = new HashMap<>();
+    private final Map<Long, RoaringBitmap> byCategory = new HashMap<>();
+    // epoch day -> id các product tạo trong ngày
+    private final NavigableMap<Long, RoaringBitmap> byDay = new TreeMap<>();
+
+    private volatile boolean ready = false;
+
+    public ProductFilterIndex(DataSource dataSource,
+                              @Value("${product.filter-index.fetch-size:5000}") int fetchSize) {
+        // JdbcTemplate riêng có fetch size để stream toàn bộ bảng lúc build
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            byStatus.clear();
+            byCategory.clear();
+            byDay.clear();
+
+            boolean[] overflow = {false};
+            jdbcTemplate.query("select id, status, created_date from Product", rs -> {
+                long id = rs.getLong(1);
+                if (id > Integer.MAX_VALUE) {
+                    overflow[0] = true;
+                    return;
+                }
+                java.sql.Date createdDate = rs.getDate(3);
+                addStatus((int) id, rs.getString(2));
+                addDay((int) id, createdDate);
+            });
+            // Bitmap 32-bit: id vượt int thì không dùng index, các query tự lọc trên DB như cũ
+            if (overflow[0]) {
+                byStatus.clear();
+                byDay.clear();
+                log.warn("Product id exceeds int range, product filter index disabled");
+                return;
+            }
+            jdbcTemplate.query("select product_id, category_id from Product_Category", rs -> {
+                long id = rs.getLong(1);
+                if (id <= Integer.MAX_VALUE) {
+                    byCategory.computeIfAbsent(rs.getLong(2), key -> new RoaringBitmap()).add((int) id);
+                }
+            });
+
+            byStatus.values().forEach(RoaringBitmap::runOptimize);
+            byCategory.values().forEach(RoaringBitmap::runOptimize);
+            byDay.values().forEach(RoaringBitmap::runOptimize);
+            ready = true;
+            log.info("Product filter index built: {} statuses, {} categories, {} days",
+                    byStatus.size(), byCategory.size(), byDay.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tập id product thoả status / category / khoảng ngày tạo (tham số null = không lọc).
+     * Trả về bitmap mới (người gọi được sửa), hoặc null nếu index chưa dùng được.
+     */
+    public RoaringBitmap match(String status, Long categoryId, java.util.Date startDate, java.util.Date endDate) {
+        if (!ready) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            // Kiểm tra lại trong lock: rebuild có thể đã bắt đầu (map đang xoá / build dở) sau lần kiểm tra trên
+            if (!ready) {
+                return null;
+            }
+            RoaringBitmap result = status != null
+                    ? byStatus.getOrDefault(status, new RoaringBitmap()).clone()
+                    : RoaringBitmap.or(byStatus.values().iterator());
+            if (categoryId != null && !result.isEmpty()) {
+                result.and(byCategory.getOrDefault(categoryId, new RoaringBitmap()));
+            }
+            if ((startDate != null || endDate != null) && !result.isEmpty()) {
+                Long from = startDate != null ? epochDay(startDate) : Long.MIN_VALUE;
+                Long to = endDate != null ? epochDay(endDate) : Long.MAX_VALUE;
+                NavigableMap<Long, RoaringBitmap> days = from <= to
+                        ? byDay.subMap(from, true, to, true)
+                        : new TreeMap<>();
+                // OR các bucket ngày trong khoảng rồi AND với kết quả
+                result.and(RoaringBitmap.or(days.values().iterator()));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Số product của bitmap trong từng category (đếm giao, không tạo bitmap trung gian), null nếu đang rebuild
+    public Map<Long, Long> countByCategory(RoaringBitmap base) {
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                return null;
+            }
+            Map<Long, Long> counts = new HashMap<>();
+            for (Map.Entry<Long, RoaringBitmap> entry : byCategory.entrySet()) {
+                long count = RoaringBitmap.andCardinality(base, entry.getValue());
+                if (count > 0) {
+                    counts.put(entry.getKey(), count);
+                }
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Ghi đè status + danh sách category của 1 product (tạo mới thì có thêm ngày tạo)
+    public void put(Long id, String status, java.util.Date createdDate, Collection<Long> categoryIds) {
+        if (id > Integer.MAX_VALUE) {
+            return;
+        }
+        int key = id.intValue();
+        lock.writeLock().lock();
+        try {
+            // Kiểm tra trong lock: đang rebuild thì chờ build xong rồi mới ghi
+            if (!ready) {
+                return;
+            }
+            byStatus.values().forEach(bitmap -> bitmap.remove(key));
+            addStatus(key, status);
+            addDay(key, createdDate);
+            byCategory.values().forEach(bitmap -> bitmap.remove(key));
+            for (Long categoryId : new HashSet<>(categoryIds)) {
+                byCategory.computeIfAbsent(categoryId, k -> new RoaringBitmap()).add(key);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Đổi status nhiều product (soft delete)
+    public void setStatus(Collection<Long> ids, String status) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            for (Long id : ids) {
+                if (id > Integer.MAX_VALUE) {
+                    continue;
+                }
+                int key = id.intValue();
+                byStatus.values().forEach(bitmap -> bitmap.remove(key));
+                addStatus(key, status);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public static Set<Long> toIds(RoaringBitmap bitmap) {
+        Set<Long> ids = new HashSet<>(bitmap.getCardinality() * 2);
+        bitmap.forEach((int id) -> ids.add((long) id));
+        return ids;
+    }
+
+    public static RoaringBitmap toBitmap(Collection<Long> ids) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (Long id : ids) {
+            if (id <= Integer.MAX_VALUE) {
+                bitmap.add(id.intValue());
+            }
+        }
+        return bitmap;
+    }
+
+    private void addStatus(int id, String status) {
+        if (status != null) {
+            byStatus.computeIfAbsent(status, key -> new RoaringBitmap()).add(id);
+        }
+    }
+
+    private void addDay(int id, java.util.Date createdDate) {
+        if (createdDate != null) {
+            byDay.computeIfAbsent(epochDay(createdDate), key -> new RoaringBitmap()).add(id);
+        }
+    }
+
+    // Cột created_date kiểu DATE; java.util.Date thường (vd từ Instant) thì quy về ngày theo múi giờ JVM như JDBC
+    private static long epochDay(java.util.Date date) {
+        java.sql.Date sqlDate = date instanceof java.sql.Date d ? d : new java.sql.Date(date.getTime());
+        return sqlDate.toLocalDate().toEpochDay();
+    }
+}
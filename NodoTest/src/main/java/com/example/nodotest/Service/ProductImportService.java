@@ -0,0 +1,495 @@
+package com.example.nodotest.Service;
+
+import com.example.nodotest.Config.TransactionHooks;
+import com.example.nodotest.Dto.Response.ImportReport;
+import com.example.nodotest.Exception.InvalidFileException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.util.*;
+
+/**
+ * Import product hàng loạt từ file .xlsx / .csv (cùng cột với file export:
+ * ID, Tên sản phẩm, Mã sản phẩm, Giá, Số lượng, Ngày tạo, Ngày sửa, Danh mục).
+ * Cột ID / Ngày tạo / Ngày sửa được bỏ qua; Danh mục là danh sách tên hoặc mã category, cách nhau bởi dấu phẩy.
+ * File được đọc dạng stream (SAX với xlsx), mỗi lô batch-size dòng được kiểm tra trùng mã và insert
+ * bằng JDBC batch trong 1 transaction riêng, nên bộ nhớ chỉ phụ thuộc batch-size, không phụ thuộc kích thước file.
+ */
+@Service
+@Slf4j
+public class ProductImportService {
+
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    // Vị trí cột, giống EXPORT_COLUMNS trong ProductService
+    private static final int COL_NAME = 1;
+    private static final int COL_CODE = 2;
+    private static final int COL_PRICE = 3;
+    private static final int COL_QUANTITY = 4;
+    private static final int COL_CATEGORIES = 7;
+    private static final String HEADER_PRICE = "Giá";
+    private static final String HEADER_QUANTITY = "Số lượng";
+
+    private static final String INSERT_PRODUCT_SQL =
+            "insert into Product (name, price, product_code, quantity, status, " +
+            "created_date, modified_date, created_by, modified_by) " +
+            "values (?, ?, ?, ?, '1', ?, ?, 'admin', 'admin')";
+
+    private static final String INSERT_PRODUCT_CATEGORY_SQL =
+            "insert into Product_Category (product_id, category_id, created_date, modified_date) " +
+            "values (?, ?, ?, ?)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageSource messageSource;
+    private final ProductSearchIndex productSearchIndex;
+    private final CatalogVersion catalogVersion;
+    private final CategoryDictionary categoryDictionary;
+    private final ProductFilterIndex productFilterIndex;
+    private final int batchSize;
+
+    public ProductImportService(NamedParameterJdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                MessageSource messageSource,
+                                ProductSearchIndex productSearchIndex,
+                                CatalogVersion catalogVersion,
+                                CategoryDictionary categoryDictionary,
+                                ProductFilterIndex productFilterIndex,
+                                @Value("${product.import.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.messageSource = messageSource;
+        this.productSearchIndex = productSearchIndex;
+        this.catalogVersion = catalogVersion;
+        this.categoryDictionary = categoryDictionary;
+        this.productFilterIndex = productFilterIndex;
+        this.batchSize = batchSize;
+    }
+
+    // rowNumber bắt đầu từ 1 (dòng header)
+    private interface RowHandler {
+        void row(int rowNumber, List<String> cells);
+    }
+
+    private record ImportRow(int rowNumber, String name, String productCode, double price, long quantity,
+                             Set<Long> categoryIds) {
+    }
+
+    // Category đang active, tra theo mã (uppercase) hoặc tên (lowercase)
+    private record CategoryLookup(Map<String, Long> byCode, Map<String, Long> byName) {
+
+        Long find(String value) {
+            Long id = byCode.get(value.toUpperCase(Locale.ROOT));
+            return id != null ? id : byName.get(value.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    public ImportReport importProducts(MultipartFile file, Locale locale) throws IOException {
+        String filename = Optional.ofNullable(file.getOriginalFilename()).orElse("").toLowerCase(Locale.ROOT);
+
+        ImportBatch batch = new ImportBatch(loadCategories(), locale);
+        if (filename.endsWith(".xlsx")) {
+            readXlsx(file, batch::accept, locale);
+        } else if (filename.endsWith(".csv")) {
+            readCsv(file, batch::accept);
+        } else {
+            throw new InvalidFileException(messageSource.getMessage("error.product.import.type", null, locale));
+        }
+        batch.flush();
+
+        ImportReport report = batch.report();
+        log.info("Product import finished: {} rows, {} imported, {} failed",
+                report.totalRows(), report.importedRows(), report.failedRows());
+        return report;
+    }
+
+    private CategoryLookup loadCategories() {
+        Map<String, Long> byCode = new HashMap<>();
+        Map<String, Long> byName = new HashMap<>();
+        for (CategoryDictionary.Entry category : categoryDictionary.activeEntries()) {
+            byCode.put(category.code().toUpperCase(Locale.ROOT), category.id());
+            byName.putIfAbsent(category.name().toLowerCase(Locale.ROOT), category.id());
+        }
+        return new CategoryLookup(byCode, byName);
+    }
+
+    // ========== ĐỌC FILE ==========
+
+    private void readXlsx(MultipartFile file, RowHandler handler, Locale locale) throws IOException {
+        // OPCPackage đọc trực tiếp từ file (zip random access) thay vì giữ cả file trong bộ nhớ
+        Path temp = Files.createTempFile("product-import-", ".xlsx");
+        try {
+            file.transferTo(temp);
+            OPCPackage pkg = OPCPackage.open(temp.toFile(), PackageAccess.READ);
+            try {
+                XSSFReader reader = new XSSFReader(pkg);
+                ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+                StylesTable styles = reader.getStylesTable();
+
+                // Chỉ đọc sheet đầu tiên
+                Iterator<InputStream> sheets = reader.getSheetsData();
+                if (!sheets.hasNext()) {
+                    return;
+                }
+                try (InputStream sheet = sheets.next()) {
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(
+                            styles, null, strings, new SheetRowCollector(handler), new RawNumberFormatter(), false));
+                    parser.parse(new InputSource(sheet));
+                }
+            } finally {
+                // mở READ thì đóng bằng revert(), close() sẽ cố ghi lại file
+                pkg.revert();
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            log.error("Failed to read import file: {}", file.getOriginalFilename(), e);
+            throw new InvalidFileException(messageSource.getMessage("error.product.import.read", null, locale));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void readCsv(MultipartFile file, RowHandler handler) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            // Bỏ BOM nếu file lưu từ Excel
+            reader.mark(1);
+            if (reader.read() != '\uFEFF') {
+                reader.reset();
+            }
+
+            int rowNumber = 0;
+            List<String> record;
+            while ((record = readCsvRecord(reader)) != null) {
+                handler.row(++rowNumber, record);
+            }
+        }
+    }
+
+    // Đọc 1 bản ghi CSV (RFC 4180): hỗ trợ "..." chứa dấu phẩy, xuống dòng và "" (dấu nháy)
+    private List<String> readCsvRecord(BufferedReader reader) throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (c != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (next == -1) {
+                            break;
+                        }
+                        reader.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // Gom các ô của 1 dòng (SAX bỏ qua ô trống nên phải điền lại theo vị trí cột)
+    private static class SheetRowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowHandler handler;
+        private List<String> cells = new ArrayList<>();
+
+        SheetRowCollector(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells = new ArrayList<>();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            handler.row(rowNum + 1, cells);
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = cellReference != null ? new CellReference(cellReference).getCol() : cells.size();
+            while (cells.size() < col) {
+                cells.add("");
+            }
+            cells.add(formattedValue);
+        }
+    }
+
+    // Trả số nguyên bản (không theo định dạng tiền tệ/ngày của ô) để parse lại giá, số lượng
+    private static class RawNumberFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            return NumberToTextConverter.toText(value);
+        }
+    }
+
+    // ========== XỬ LÝ THEO LÔ ==========
+
+    private class ImportBatch {
+        private final CategoryLookup categories;
+        private final Locale locale;
+        private final List<ImportRow> pending = new ArrayList<>();
+        private final List<ImportReport.RowError> errors = new ArrayList<>();
+        private boolean headerSkipped = false;
+        private int totalRows = 0;
+        private int importedRows = 0;
+        private int failedRows = 0;
+
+        ImportBatch(CategoryLookup categories, Locale locale) {
+            this.categories = categories;
+            this.locale = locale;
+        }
+
+        void accept(int rowNumber, List<String> cells) {
+            // Dòng đầu tiên là header
+            if (!headerSkipped) {
+                headerSkipped = true;
+                return;
+            }
+            if (cells.stream().allMatch(cell -> cell == null || cell.isBlank())) {
+                return;
+            }
+
+            totalRows++;
+            ImportRow row = parse(rowNumber, cells);
+            if (row != null) {
+                pending.add(row);
+                if (pending.size() >= batchSize) {
+                    flush();
+                }
+            }
+        }
+
+        // Validate giống ProductRequest + sanitizeRequest; lỗi thì ghi vào báo cáo và trả null
+        private ImportRow parse(int rowNumber, List<String> cells) {
+            String name = cell(cells, COL_NAME);
+            String code = cell(cells, COL_CODE).toUpperCase();
+
+            if (name.isEmpty()) {
+                return reject(rowNumber, code, "product.name.notBlank");
+            }
+            if (name.length() > 200) {
+                return reject(rowNumber, code, "product.name.size");
+            }
+            if (code.isEmpty()) {
+                return reject(rowNumber, code, "product.code.notBlank");
+            }
+            if (code.length() > 100) {
+                return reject(rowNumber, code, "product.code.size");
+            }
+
+            String priceValue = cell(cells, COL_PRICE);
+            if (priceValue.isEmpty()) {
+                return reject(rowNumber, code, "product.price.notNull");
+            }
+            double price;
+            try {
+                price = Double.parseDouble(priceValue);
+            } catch (NumberFormatException e) {
+                return reject(rowNumber, code, "error.product.import.number", HEADER_PRICE);
+            }
+            // parseDouble nhận cả "NaN", "Infinity" và số quá lớn (=> Infinity), không phải giá hợp lệ
+            if (!Double.isFinite(price)) {
+                return reject(rowNumber, code, "error.product.import.number", HEADER_PRICE);
+            }
+            if (price < 0) {
+                return reject(rowNumber, code, "product.price.min");
+            }
+
+            String quantityValue = cell(cells, COL_QUANTITY);
+            if (quantityValue.isEmpty()) {
+                return reject(rowNumber, code, "product.quantity.notNull");
+            }
+            long quantity;
+            try {
+                quantity = Long.parseLong(quantityValue);
+            } catch (NumberFormatException e) {
+                return reject(rowNumber, code, "error.product.import.number", HEADER_QUANTITY);
+            }
+            if (quantity < 0) {
+                return reject(rowNumber, code, "product.quantity.min");
+            }
+
+            Set<Long> categoryIds = new LinkedHashSet<>();
+            for (String value : cell(cells, COL_CATEGORIES).split(",")) {
+                String category = value.trim();
+                if (category.isEmpty()) {
+                    continue;
+                }
+                Long categoryId = categories.find(category);
+                if (categoryId == null) {
+                    return reject(rowNumber, code, "product.category.notfound", category);
+                }
+                categoryIds.add(categoryId);
+            }
+            if (categoryIds.isEmpty()) {
+                return reject(rowNumber, code, "product.categoryIds.notEmpty");
+            }
+
+            // Round price to 2 decimal places
+            price = Math.round(price * 100.0) / 100.0;
+            return new ImportRow(rowNumber, name, code, price, quantity, categoryIds);
+        }
+
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            // Trùng mã trong cùng lô (trùng với lô trước thì lô trước đã commit => bị bắt ở bước kiểm tra DB)
+            Map<String, ImportRow> byCode = new LinkedHashMap<>();
+            for (ImportRow row : pending) {
+                if (byCode.putIfAbsent(row.productCode(), row) != null) {
+                    reject(row.rowNumber(), row.productCode(), "error.product.import.duplicate");
+                }
+            }
+            pending.clear();
+
+            // Kiểm tra mã đã tồn tại bằng 1 query cho cả lô
+            Set<String> existingCodes = new HashSet<>();
+            jdbcTemplate.queryForList(
+                    "select product_code from Product where product_code in (:codes)",
+                    Map.of("codes", byCode.keySet()),
+                    String.class
+            ).forEach(existing -> existingCodes.add(existing.toUpperCase()));
+
+            List<ImportRow> rows = new ArrayList<>(byCode.size());
+            for (ImportRow row : byCode.values()) {
+                if (existingCodes.contains(row.productCode())) {
+                    reject(row.rowNumber(), row.productCode(), "product.code.exists");
+                } else {
+                    rows.add(row);
+                }
+            }
+            if (rows.isEmpty()) {
+                return;
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> insertBatch(rows));
+                importedRows += rows.size();
+            } catch (DataAccessException e) {
+                // Thường do import song song cùng mã => cả lô rollback, báo lỗi từng dòng để import lại
+                log.error("Failed to insert import batch starting at row {}", rows.get(0).rowNumber(), e);
+                rows.forEach(row -> reject(row.rowNumber(), row.productCode(), "error.product.import.batch"));
+            }
+        }
+
+        private void insertBatch(List<ImportRow> rows) {
+            Date today = new Date(System.currentTimeMillis());
+
+            jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_PRODUCT_SQL, rows, rows.size(), (ps, row) -> {
+                ps.setString(1, row.name());
+                ps.setDouble(2, row.price());
+                ps.setString(3, row.productCode());
+                ps.setLong(4, row.quantity());
+                ps.setDate(5, today);
+                ps.setDate(6, today);
+            });
+
+            // Lấy lại id theo mã (batch insert không trả generated keys ổn định cho mọi driver)
+            Map<String, Long> ids = new HashMap<>();
+            jdbcTemplate.query(
+                    "select id, product_code from Product where product_code in (:codes)",
+                    Map.of("codes", rows.stream().map(ImportRow::productCode).toList()),
+                    rs -> {
+                        ids.put(rs.getString("product_code").toUpperCase(), rs.getLong("id"));
+                    }
+            );
+
+            List<long[]> links = new ArrayList<>();
+            for (ImportRow row : rows) {
+                Long productId = ids.get(row.productCode());
+                row.categoryIds().forEach(categoryId -> links.add(new long[]{productId, categoryId}));
+            }
+            jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_PRODUCT_CATEGORY_SQL, links, links.size(), (ps, link) -> {
+                ps.setLong(1, link[0]);
+                ps.setLong(2, link[1]);
+                ps.setDate(3, today);
+                ps.setDate(4, today);
+            });
+
+            // Cập nhật search index, filter index + cache version sau khi lô commit
+            TransactionHooks.afterCommit(() -> rows.forEach(row -> {
+                Long productId = ids.get(row.productCode());
+                productSearchIndex.index(productId, row.name(), row.productCode());
+                productFilterIndex.put(productId, "1", today, row.categoryIds());
+            }));
+            catalogVersion.bumpAfterCommit();
+        }
+
+        private ImportRow reject(int rowNumber, String productCode, String messageKey, Object... args) {
+            failedRows++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                String message = messageSource.getMessage(messageKey, args, locale);
+                errors.add(new ImportReport.RowError(rowNumber, productCode.isEmpty() ? null : productCode, message));
+            }
+            return null;
+        }
+
+        private String cell(List<String> cells, int index) {
+            if (index >= cells.size() || cells.get(index) == null) {
+                return "";
+            }
+            return cells.get(index).trim();
+        }
+
+        ImportReport report() {
+            return new ImportReport(totalRows, importedRows, failedRows, errors);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.nodotest.Service;
+
+import com.example.nodotest.Dto.Pagination.PagedResponse;
+import com.example.nodotest.Dto.Response.CategoryFacet;
+import com.example.nodotest.Dto.Response.ProductResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Cache kết quả /api/product/search (giới hạn số entry, bỏ entry ít dùng khi đầy).
+ * Key gồm CatalogVersion nên mọi thay đổi product/category đã commit làm các entry cũ không còn được dùng.
+ * Số hit/miss xem ở /actuator/metrics/cache.gets?tag=cache:productSearch
+ */
+@Component
+public class ProductSearchCache {
+
+    public static final String CACHE_NAME = "productSearch";
+
+    // Bộ lọc đã chuẩn hoá (trim, lowercase, rỗng = null) để các request giống nhau dùng chung entry
+    private record SearchKey(long version, String name, String code, Long startDate, Long endDate,
+                             Long categoryId, int page, int size, String sort, String cursor) {
+    }
+
+    public static final String FACET_CACHE_NAME = "productSearchFacets";
+
+    private final Cache<SearchKey, PagedResponse<ProductResponse>> cache;
+    // Facet không phụ thuộc trang => cache riêng, mọi trang của cùng bộ lọc dùng chung
+    private final Cache<SearchKey, List<CategoryFacet>> facetCache;
+    private final CatalogVersion catalogVersion;
+
+    public ProductSearchCache(CatalogVersion catalogVersion,
+                              MeterRegistry meterRegistry,
+                              @Value("${product.search.cache.max-size:2000}") long maxSize,
+                              @Value("${product.search.cache.ttl:10m}") Duration ttl) {
+        this.catalogVersion = catalogVersion;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                // TTL chỉ để dọn entry của version cũ, việc invalidate do version đảm nhận
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.facetCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, facetCache, FACET_CACHE_NAME);
+    }
+
+    public PagedResponse<ProductResponse> get(String name, String code, Date startDate, Date endDate,
+                                              Long categoryId, Pageable pageable,
+                                              Supplier<PagedResponse<ProductResponse>> loader) {
+        SearchKey key = new SearchKey(
+                catalogVersion.current(), normalize(name), normalize(code), toMillis(startDate), toMillis(endDate),
+                categoryId, pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort().toString(), null
+        );
+        return cache.get(key, k -> loader.get());
+    }
+
+    public PagedResponse<ProductResponse> get(String name, String code, Date startDate, Date endDate,
+                                              Long categoryId, String cursor, int size,
+                                              Supplier<PagedResponse<ProductResponse>> loader) {
+        SearchKey key = new SearchKey(
+                catalogVersion.current(), normalize(name), normalize(code), toMillis(startDate), toMillis(endDate),
+                categoryId, 0, size, null, cursor == null ? "" : cursor.trim()
+        );
+        return cache.get(key, k -> loader.get());
+    }
+
+    public List<CategoryFacet> getFacets(String name, String code, Date startDate, Date endDate,
+                                         Supplier<List<CategoryFacet>> loader) {
+        SearchKey key = new SearchKey(
+                catalogVersion.current(), normalize(name), normalize(code), toMillis(startDate), toMillis(endDate),
+                null, 0, 0, null, null
+        );
+        return facetCache.get(key, k -> loader.get());
+    }
+
+    private String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        // Query tìm kiếm dùng LOWER(...) LIKE LOWER(...) nên lowercase không đổi kết quả
+        String trimmed = value.trim().toLowerCase(Locale.ROOT);
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private Long toMillis(Date date) {
+        return date == null ? null : date.getTime();
+    }
+}
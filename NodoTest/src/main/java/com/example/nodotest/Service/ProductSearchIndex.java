@@ -0,0 +1,207 @@
+package com.example.nodotest.Service;
+
+import com.example.nodotest.Repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trigram index (trong bộ nhớ) cho name và productCode của product đang active.
+ * Dùng để đổi điều kiện "contains" thành tập id ứng viên trước khi query DB,
+ * vì LIKE '%...%' không dùng được index trên MariaDB.
+ * So khớp không phân biệt hoa thường và dấu giống collation utf8mb4 _ci của DB ("ao" khớp "Áo").
+ */
+@Component
+@Slf4j
+public class ProductSearchIndex {
+
+    private static final int GRAM_SIZE = 3;
+
+    // Quá nhiều ứng viên thì IN (...) còn chậm hơn LIKE => để DB tự lọc
+    public static final int MAX_CANDIDATES = 2000;
+
+    private final ProductRepository productRepository;
+
+    // trigram -> id các product chứa trigram đó
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    // id -> name/code đã fold (lowercase, bỏ dấu), dùng để kiểm tra lại ứng viên
+    private final Map<Long, IndexedProduct> documents = new ConcurrentHashMap<>();
+
+    private volatile boolean ready = false;
+
+    private record IndexedProduct(String name, String code) {
+    }
+
+    public ProductSearchIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        ready = false;
+        postings.clear();
+        documents.clear();
+
+        List<Object[]> rows = productRepository.findSearchableFields("1");
+        for (Object[] row : rows) {
+            addDocument((Long) row[0], (String) row[1], (String) row[2]);
+        }
+
+        ready = true;
+        log.info("Product search index built: {} products, {} trigrams", documents.size(), postings.size());
+    }
+
+    // Thêm mới hoặc cập nhật 1 product
+    public synchronized void index(Long id, String name, String code) {
+        removeDocument(id);
+        addDocument(id, name, code);
+    }
+
+    // Bỏ product khỏi index (soft delete)
+    public synchronized void remove(Long id) {
+        removeDocument(id);
+    }
+
+    /**
+     * Tìm tập id product có name/code chứa từ khóa.
+     * Trả về null nếu index không giúp được (chưa build xong, từ khóa < 3 ký tự,
+     * hoặc quá nhiều ứng viên) - khi đó dùng LIKE trên DB như cũ.
+     */
+    public Set<Long> findCandidates(String name, String code) {
+        if (!ready) {
+            return null;
+        }
+
+        String nameTerm = normalize(name);
+        String codeTerm = normalize(code);
+
+        // Chọn từ khóa đủ dài để tra trigram
+        String seedTerm = longest(nameTerm, codeTerm);
+        if (seedTerm == null || seedTerm.length() < GRAM_SIZE) {
+            return null;
+        }
+
+        Set<Long> candidates = intersectPostings(seedTerm);
+
+        // Kiểm tra lại chính xác cả 2 điều kiện (trigram chỉ là lọc thô)
+        Set<Long> result = new HashSet<>();
+        for (Long id : candidates) {
+            IndexedProduct doc = documents.get(id);
+            if (doc == null) {
+                continue;
+            }
+            if (nameTerm != null && !doc.name().contains(nameTerm)) {
+                continue;
+            }
+            if (codeTerm != null && !doc.code().contains(codeTerm)) {
+                continue;
+            }
+            result.add(id);
+            if (result.size() > MAX_CANDIDATES) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private Set<Long> intersectPostings(String term) {
+        // Bắt đầu từ posting list nhỏ nhất để giao nhanh
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : trigrams(term)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null || ids.isEmpty()) {
+                return Collections.emptySet();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        Set<Long> result = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    private void addDocument(Long id, String name, String code) {
+        IndexedProduct doc = new IndexedProduct(fold(name), fold(code));
+        documents.put(id, doc);
+
+        Set<String> grams = new HashSet<>(trigrams(doc.name()));
+        grams.addAll(trigrams(doc.code()));
+        for (String gram : grams) {
+            postings.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    private void removeDocument(Long id) {
+        IndexedProduct doc = documents.remove(id);
+        if (doc == null) {
+            return;
+        }
+
+        Set<String> grams = new HashSet<>(trigrams(doc.name()));
+        grams.addAll(trigrams(doc.code()));
+        for (String gram : grams) {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static List<String> trigrams(String text) {
+        if (text.length() < GRAM_SIZE) {
+            return Collections.emptyList();
+        }
+        List<String> grams = new ArrayList<>(text.length() - GRAM_SIZE + 1);
+        for (int i = 0; i + GRAM_SIZE <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+
+    private static String normalize(String term) {
+        if (term == null) {
+            return null;
+        }
+        String trimmed = term.trim();
+        return trimmed.isEmpty() ? null : fold(trimmed);
+    }
+
+    // Lowercase + bỏ dấu (tách NFD rồi bỏ dấu kết hợp, đ -> d) như collation _ci của DB
+    static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            folded.append(c == 'đ' ? 'd' : c);
+        }
+        return folded.toString();
+    }
+
+    private static String longest(String a, String b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a.length() >= b.length() ? a : b;
+    }
+}
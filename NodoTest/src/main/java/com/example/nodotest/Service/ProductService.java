@@ -1,13 +1,21 @@
 package com.example.nodotest.Service;
 
+import com.example.nodotest.Config.TransactionHooks;
 import com.example.nodotest.Dto.Pagination.PagedResponse;
 import com.example.nodotest.Dto.Pagination.PaginationInfo;
+import com.example.nodotest.Dto.Pagination.SeekCursor;
+import com.example.nodotest.Dto.Projection.CategoryCountRow;
+import com.example.nodotest.Dto.Projection.ProductCategoryLink;
+import com.example.nodotest.Dto.Projection.ProductSearchRow;
+import com.example.nodotest.Dto.Request.ProductBulkDeleteRequest;
 import com.example.nodotest.Dto.Request.ProductImageRequest;
 import com.example.nodotest.Dto.Request.ProductRequest;
 import com.example.nodotest.Dto.Response.ApiResponse;
-import com.example.nodotest.Dto.Response.ProductImageResponse;
+import com.example.nodotest.Dto.Response.BulkDeleteResult;
+import com.example.nodotest.Dto.Response.CategoryFacet;
 import com.example.nodotest.Dto.Response.ProductResponse;
 import com.example.nodotest.Entity.*;
+import com.example.nodotest.Exception.ErrorProduct.InvalidBulkDeleteRequestException;
 import com.example.nodotest.Exception.ErrorProduct.ProductCategoryNotFoundException;
 import com.example.nodotest.Exception.ErrorProduct.ProductCodeExistsException;
 import com.example.nodotest.Exception.ErrorProduct.ProductNotFoundException;
@@ -15,52 +23,85 @@ import com.example.nodotest.Exception.FileSizeExceededException;
 import com.example.nodotest.Exception.InvalidFileException;
 import com.example.nodotest.Mapper.ProductImageMapper;
 import com.example.nodotest.Mapper.ProductMapper;
+import com.example.nodotest.Mapper.ProductResponseAssembler;
 import com.example.nodotest.Repository.CategoryRepository;
 import com.example.nodotest.Repository.ProductImageRepository;
 import com.example.nodotest.Repository.ProductRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.roaringbitmap.RoaringBitmap;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.OutputStream;
 import java.sql.Date;
 import java.util.*;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
+// Timer + histogram cho mọi method public (tag class / method), qua TimedAspect
+@Timed(value = "nodotest.service", histogram = true)
 public class ProductService {
     private final ProductRepository productRepository;
     private final MessageSource messageSource;
     private final ProductMapper productMapper;
     private final ProductImageMapper productImageMapper;
+    private final ProductResponseAssembler productResponseAssembler;
     private final ProductImageRepository productImageRepository;
     private final CategoryRepository categoryRepository;
+    private final ProductSearchIndex productSearchIndex;
+    private final ImageIngestionService imageIngestionService;
+    private final ThumbnailService thumbnailService;
+    private final ProductSearchCache productSearchCache;
+    private final CatalogVersion catalogVersion;
+    private final CategoryDictionary categoryDictionary;
+    private final ProductFilterIndex productFilterIndex;
+    private final TransactionTemplate transactionTemplate;
 
     public ProductService(ProductRepository productRepository,
                           MessageSource messageSource, ProductMapper productMapper, ProductImageMapper productImageMapper,
-                          ProductImageRepository productImageRepository, CategoryRepository categoryRepository) {
+                          ProductResponseAssembler productResponseAssembler,
+                          ProductImageRepository productImageRepository, CategoryRepository categoryRepository,
+                          ProductSearchIndex productSearchIndex, ImageIngestionService imageIngestionService,
+                          ThumbnailService thumbnailService, ProductSearchCache productSearchCache,
+                          CatalogVersion catalogVersion, CategoryDictionary categoryDictionary,
+                          ProductFilterIndex productFilterIndex, PlatformTransactionManager transactionManager) {
         this.productRepository = productRepository;
         this.messageSource = messageSource;
         this.productMapper = productMapper;
         this.productImageMapper = productImageMapper;
+        this.productResponseAssembler = productResponseAssembler;
         this.productImageRepository = productImageRepository;
         this.categoryRepository = categoryRepository;
+        this.productSearchIndex = productSearchIndex;
+        this.imageIngestionService = imageIngestionService;
+        this.thumbnailService = thumbnailService;
+        this.productSearchCache = productSearchCache;
+        this.catalogVersion = catalogVersion;
+        this.categoryDictionary = categoryDictionary;
+        this.productFilterIndex = productFilterIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Value("${image.upload.product}")
     private String imageFolderPath;
 
@@ -88,12 +129,7 @@ public class ProductService {
         checkProductCodeExists(req.getProductCode(), locale);
 
         // get category list from id with status 1
-        List<Category> categories = categoryRepository.getListIdWithStatus(req.getCategoryIds(), "1");
-
-        if (categories.isEmpty()) {
-            String msg = messageSource.getMessage("product.category.not.found", null, locale);
-            throw new ProductCategoryNotFoundException(msg);
-        }
+        List<Category> categories = resolveActiveCategories(req.getCategoryIds(), locale);
 
         // map productReq to entity
         Product product = productMapper.toEntity(req);
@@ -141,6 +177,14 @@ public class ProductService {
             }
         }
 
+        // Cập nhật search index sau khi commit
+        List<Long> categoryIds = categories.stream().map(Category::getId).toList();
+        TransactionHooks.afterCommit(() -> {
+            productSearchIndex.index(savedProduct.getId(), savedProduct.getName(), savedProduct.getProductCode());
+            productFilterIndex.put(savedProduct.getId(), "1", savedProduct.getCreatedDate(), categoryIds);
+        });
+        catalogVersion.bumpAfterCommit();
+
         ProductResponse productResponse = productMapper.toResponse(savedProduct);
 
         return new ApiResponse<>(
@@ -185,13 +229,8 @@ public class ProductService {
     }
 
     private List<ProductImage> saveImages(List<MultipartFile> images, Product product, Locale locale, List<String> savedFilePaths) throws IOException {
-        List<ProductImage> productImages = new ArrayList<>();
-
-        // Create folder if not exists
-        File folder = new File(imageFolderPath);
-        if (!folder.exists() && !folder.mkdirs()) {
-            throw new IOException("Cannot create image folder");
-        }
+        // Validate tất cả trước (tuần tự), sau đó mới ghi file song song
+        List<MultipartFile> validImages = new ArrayList<>();
 
         for (MultipartFile image : images) {
             if (image.isEmpty()) continue;
@@ -218,60 +257,40 @@ public class ProductService {
                 throw new InvalidFileException(msg);
             }
 
-            // Save file
-            String uuid = UUID.randomUUID().toString();
-            String newFileName = uuid + extension;
-            Path destination = Paths.get(imageFolderPath, newFileName);
-            try {
-                Files.copy(image.getInputStream(), destination);
+            validImages.add(image);
+        }
 
-                // Track saved file path for potential cleanup
-                savedFilePaths.add(destination.toString());
-
-                log.debug("Image saved: {}", newFileName);
-            } catch (IOException e) {
-                log.error("Failed to save image: {}", newFileName, e);
-                throw new IOException("Failed to save image: " + originalName);
-            }
+        // Save files (song song, file tạm + move atomic)
+        List<ImageIngestionService.StoredImage> storedImages =
+                imageIngestionService.store(validImages, imageFolderPath, savedFilePaths);
 
+        List<ProductImage> productImages = new ArrayList<>();
+        for (ImageIngestionService.StoredImage stored : storedImages) {
             // Map to ProductImage entity
             ProductImageRequest imageRequest = new ProductImageRequest(
-                    originalName, uuid, destination.toString(), "1", null
+                    stored.originalName(), stored.uuid(), stored.path().toString(), "1", null
             );
             ProductImage productImage = productImageMapper.toEntity(imageRequest);
+            productImage.setContentHash(stored.contentHash());
             productImage.setProduct(product);
 
             productImages.add(productImage);
         }
 
+        // Sinh thumbnail nền sau khi commit
+        TransactionHooks.afterCommit(() ->
+                thumbnailService.generateAsync(ThumbnailService.ImageOwner.PRODUCT, storedImages));
+
         return productImages;
     }
 
+    // File theo nội dung có thể đang được request khác (chưa commit) dùng lại => không xoá ngay,
+    // ImageIngestionService xoá sau grace period nếu khi đó không còn dòng ảnh nào tham chiếu
     private void cleanupFiles(List<String> filePaths) {
         if (filePaths == null || filePaths.isEmpty()) {
             return;
         }
-
-        log.info("Starting cleanup of {} files", filePaths.size());
-
-        for (String filePath : filePaths) {
-            try {
-                Path path = Paths.get(filePath);
-                boolean deleted = Files.deleteIfExists(path);
-
-                if (deleted) {
-                    log.info("Successfully cleaned up file: {}", filePath);
-                } else {
-                    log.warn("File not found during cleanup: {}", filePath);
-                }
-
-            } catch (IOException e) {
-                log.error("Failed to cleanup file: {}", filePath, e);
-                // Continue with other files even if one fails
-            }
-        }
-
-        log.info("Cleanup completed");
+        imageIngestionService.deleteWhenUnreferenced(List.copyOf(filePaths));
     }
 
     private String getFileExtension(String filename) {
@@ -311,31 +330,123 @@ public class ProductService {
         return allImages;
     }
 
-    private ProductResponse buildProductResponse(
-            Product product,
-            Map<Long, List<Category>> categoryMap,
-            Map<Long, List<ProductImage>> imageMap
+    public PagedResponse<ProductResponse> getProducts(
+            String name,
+            String code,
+            Date startDate,
+            Date endDate,
+            Long categoryId,
+            Pageable pageable
     ) {
+        return productSearchCache.get(name, code, startDate, endDate, categoryId, pageable,
+                () -> searchProducts(name, code, startDate, endDate, categoryId, pageable));
+    }
+
+    // Phân trang theo cursor (keyset) cho infinite scroll: mỗi trang có chi phí như nhau, không đếm tổng
+    public PagedResponse<ProductResponse> getProducts(
+            String name,
+            String code,
+            Date startDate,
+            Date endDate,
+            Long categoryId,
+            String cursor,
+            int size
+    ) {
+        return productSearchCache.get(name, code, startDate, endDate, categoryId, cursor, size,
+                () -> searchProductsAfterCursor(name, code, startDate, endDate, categoryId, cursor, size));
+    }
 
-        ProductResponse response = productMapper.toResponse(product);
+    // facets = true => kèm số product theo từng category cho cùng bộ lọc
+    public PagedResponse<ProductResponse> getProducts(
+            String name,
+            String code,
+            Date startDate,
+            Date endDate,
+            Long categoryId,
+            Pageable pageable,
+            boolean facets
+    ) {
+        PagedResponse<ProductResponse> page = getProducts(name, code, startDate, endDate, categoryId, pageable);
+        return facets ? withFacets(page, name, code, startDate, endDate) : page;
+    }
 
-        // Map categories to comma-separated string
-        List<Category> categories = categoryMap.getOrDefault(product.getId(), Collections.emptyList());
-        String categoryNames = categories.stream()
-                .map(Category::getName)
-                .collect(Collectors.joining(", "));
-        response.setCategories(categoryNames);
+    public PagedResponse<ProductResponse> getProducts(
+            String name,
+            String code,
+            Date startDate,
+            Date endDate,
+            Long categoryId,
+            String cursor,
+            int size,
+            boolean facets
+    ) {
+        PagedResponse<ProductResponse> page = getProducts(name, code, startDate, endDate, categoryId, cursor, size);
+        return facets ? withFacets(page, name, code, startDate, endDate) : page;
+    }
 
-        // Map images using ProductImageMapper
-        List<ProductImage> images = imageMap.getOrDefault(product.getId(), Collections.emptyList());
-        List<ProductImageResponse> imageResponses = productImageMapper.toResponses(images);
-        response.setImages(imageResponses);
+    /**
+     * Số product active theo từng category (chỉ category active), cho bộ lọc name/code/ngày tạo.
+     * Không áp categoryId: facet dùng để chuyển sang category khác nên phải đếm trên toàn bộ category.
+     */
+    public List<CategoryFacet> getCategoryFacets(String name, String code, Date startDate, Date endDate) {
+        return productSearchCache.getFacets(name, code, startDate, endDate,
+                () -> countCategoryFacets(name, code, startDate, endDate));
+    }
 
-        return response;
+    // Trang lấy từ cache dùng chung => tạo bản mới rồi mới gắn facets
+    private PagedResponse<ProductResponse> withFacets(
+            PagedResponse<ProductResponse> page, String name, String code, Date startDate, Date endDate) {
+        PagedResponse<ProductResponse> result = new PagedResponse<>(page.getContent(), page.getPagination());
+        result.setFacets(getCategoryFacets(name, code, startDate, endDate));
+        return result;
     }
 
+    private List<CategoryFacet> countCategoryFacets(String name, String code, Date startDate, Date endDate) {
+        // Dùng chung trigram index với tìm kiếm
+        Set<Long> candidateIds = productSearchIndex.findCandidates(name, code);
+        if (candidateIds != null) {
+            if (candidateIds.isEmpty()) {
+                return Collections.emptyList();
+            }
+            name = null;
+            code = null;
+        } else {
+            name = sanitizeSearchParam(name);
+            code = sanitizeSearchParam(code);
+        }
 
-    public PagedResponse<ProductResponse> getProducts(
+        Map<Long, Long> counts = new HashMap<>();
+        // Không còn điều kiện text cần LIKE => đếm hoàn toàn trên bitmap, không query
+        RoaringBitmap matched = (name == null && code == null)
+                ? productFilterIndex.match("1", null, startDate, endDate)
+                : null;
+        if (matched != null && candidateIds != null) {
+            matched.and(ProductFilterIndex.toBitmap(candidateIds));
+        }
+        // index bắt đầu rebuild giữa 2 lần gọi => đếm lại trên DB
+        Map<Long, Long> indexCounts = matched != null ? productFilterIndex.countByCategory(matched) : null;
+        if (indexCounts != null) {
+            counts.putAll(indexCounts);
+        } else {
+            for (CategoryCountRow row : productRepository.countByCategory(
+                    "1", name, code, startDate, endDate, candidateIds)) {
+                counts.put(row.categoryId(), row.count());
+            }
+        }
+
+        List<CategoryFacet> facets = new ArrayList<>();
+        counts.forEach((categoryId, count) -> {
+            String categoryName = categoryDictionary.activeName(categoryId);
+            if (categoryName != null) {
+                facets.add(new CategoryFacet(categoryId, categoryName, count));
+            }
+        });
+        facets.sort(Comparator.comparingLong(CategoryFacet::count).reversed()
+                .thenComparing(CategoryFacet::categoryName));
+        return facets;
+    }
+
+    private PagedResponse<ProductResponse> searchProducts(
             String name,
             String code,
             Date startDate,
@@ -343,18 +454,30 @@ public class ProductService {
             Long categoryId,
             Pageable pageable
     ) {
-        name = sanitizeSearchParam(name);
-        code = sanitizeSearchParam(code);
+        // Tra trigram index trước: có tập id ứng viên thì DB không cần LIKE '%...%'
+        Set<Long> candidateIds = productSearchIndex.findCandidates(name, code);
+        if (candidateIds != null) {
+            name = null;
+            code = null;
+        } else {
+            name = sanitizeSearchParam(name);
+            code = sanitizeSearchParam(code);
+        }
+        // Thu hẹp tiếp bằng bitmap status / category / ngày tạo
+        candidateIds = narrowByFilterIndex(candidateIds, categoryId, startDate, endDate);
 
-        // Query phân trang
-        Page<Product> productsPage = productRepository.getAllProductsByStatus(
-                "1", name, code, startDate, endDate, categoryId, pageable
-        );
+        // Bước 1: chỉ lấy id của trang (EXISTS thay cho DISTINCT + join)
+        Page<Long> productIdsPage = (candidateIds != null && candidateIds.isEmpty())
+                ? Page.empty(pageable)
+                // Query phân trang
+                : productRepository.findProductIdsByStatus(
+                        "1", name, code, startDate, endDate, categoryId, candidateIds, pageable
+                );
 
-        List<Product> products = productsPage.getContent();
+        List<Long> productIds = productIdsPage.getContent();
 
         // Check empty
-        if (products.isEmpty()) {
+        if (productIds.isEmpty()) {
             return new PagedResponse<>(
                     Collections.emptyList(),
                     new PaginationInfo(
@@ -365,46 +488,130 @@ public class ProductService {
             );
         }
 
+        // Bước 2: product + category + ảnh trong 1 query projection
+        List<ProductResponse> responseList = hydrateProductResponses(productIds);
+
+        // Build pagination info
+        PaginationInfo paginationInfo = new PaginationInfo(
+                pageable.getPageNumber(),
+                pageable.getPageSize(),
+                productIdsPage.getTotalElements(),
+                productIdsPage.getTotalPages(),
+                productIdsPage.hasNext(),
+                productIdsPage.hasPrevious()
+        );
+
+        return new PagedResponse<>(responseList, paginationInfo);
+    }
+
+    private PagedResponse<ProductResponse> searchProductsAfterCursor(
+            String name,
+            String code,
+            Date startDate,
+            Date endDate,
+            Long categoryId,
+            String cursor,
+            int size
+    ) {
+        Set<Long> candidateIds = productSearchIndex.findCandidates(name, code);
+        if (candidateIds != null) {
+            name = null;
+            code = null;
+        } else {
+            name = sanitizeSearchParam(name);
+            code = sanitizeSearchParam(code);
+        }
+        candidateIds = narrowByFilterIndex(candidateIds, categoryId, startDate, endDate);
+
+        // cursor rỗng = trang đầu tiên
+        SeekCursor after = (cursor == null || cursor.isBlank()) ? null : SeekCursor.decode(cursor);
+
+        // Lấy dư 1 bản ghi để biết còn trang sau hay không
+        List<Product> products = (candidateIds != null && candidateIds.isEmpty())
+                ? Collections.emptyList()
+                : productRepository.findProductsAfterCursor(
+                        "1", name, code, startDate, endDate, categoryId,
+                        after != null ? after.createdDate() : null,
+                        after != null ? after.id() : null,
+                        candidateIds,
+                        PageRequest.of(0, size + 1)
+                );
+
+        boolean hasNext = products.size() > size;
+        if (hasNext) {
+            products = products.subList(0, size);
+        }
+
+        String nextCursor = null;
+        if (hasNext) {
+            Product last = products.get(products.size() - 1);
+            nextCursor = new SeekCursor(last.getCreatedDate(), last.getId()).encode();
+        }
+
+        return new PagedResponse<>(
+                toProductResponses(products),
+                PaginationInfo.ofCursor(size, hasNext, after != null, nextCursor)
+        );
+    }
+
+    // Dựng ProductResponse từ các dòng projection (product x category x image), giữ đúng thứ tự id của trang
+    private List<ProductResponse> hydrateProductResponses(List<Long> productIds) {
+        List<ProductSearchRow> rows = productRepository.findSearchRowsByProductIds(productIds);
+        return productResponseAssembler.fromSearchRows(productIds, rows, categoryDictionary::activeName);
+    }
+
+    // Lấy categories + images theo lô rồi map sang response
+    private List<ProductResponse> toProductResponses(List<Product> products) {
+        if (products.isEmpty()) {
+            return Collections.emptyList();
+        }
+
         // Lấy danh sách product IDs
         List<Long> productIds = products.stream()
                 .map(Product::getId)
                 .toList();
 
-        // Batch query categories
+        // Batch query categories + images
         List<ProductCategory> productCategories =
                 findProductCategoryByBatches(productIds, 1000);
-
-        // Group categories by product ID
-        Map<Long, List<Category>> categoryMap = productCategories.stream()
-                .collect(Collectors.groupingBy(
-                        pc -> pc.getProduct().getId(),
-                        Collectors.mapping(ProductCategory::getCategory, Collectors.toList())
-                ));
-
-        // Batch query images
         List<ProductImage> productImages =
                 findProductImagesByBatches(productIds, 1000);
 
-        // Group images by product ID
-        Map<Long, List<ProductImage>> imageMap = productImages.stream()
-                .collect(Collectors.groupingBy(pi -> pi.getProduct().getId()));
-
-        // Map to response với custom logic
-        List<ProductResponse> responseList = products.stream()
-                .map(product -> buildProductResponse(product, categoryMap, imageMap))
-                .toList();
+        return productResponseAssembler.fromEntities(products, productCategories, productImages);
+    }
 
-        // Build pagination info
-        PaginationInfo paginationInfo = new PaginationInfo(
-                pageable.getPageNumber(),
-                pageable.getPageSize(),
-                productsPage.getTotalElements(),
-                productsPage.getTotalPages(),
-                productsPage.hasNext(),
-                productsPage.hasPrevious()
-        );
+    /**
+     * Giao tập ứng viên (có thể null = chưa lọc) với kết quả bitmap status = 1 / category / ngày tạo.
+     * Trả về tập rỗng nếu không product nào thoả, null nếu index chưa dùng được hoặc còn quá nhiều id
+     * (khi đó IN (...) chậm hơn để DB tự lọc theo điều kiện như cũ).
+     */
+    private Set<Long> narrowByFilterIndex(Set<Long> candidateIds, Long categoryId, Date startDate, Date endDate) {
+        if (candidateIds != null && candidateIds.isEmpty()) {
+            return candidateIds;
+        }
+        RoaringBitmap matched = productFilterIndex.match("1", categoryId, startDate, endDate);
+        if (matched == null) {
+            return candidateIds;
+        }
+        if (candidateIds != null) {
+            matched.and(ProductFilterIndex.toBitmap(candidateIds));
+        }
+        if (matched.getCardinality() > ProductSearchIndex.MAX_CANDIDATES) {
+            return candidateIds;
+        }
+        return ProductFilterIndex.toIds(matched);
+    }
 
-        return new PagedResponse<>(responseList, paginationInfo);
+    // Category active theo dictionary, trả về reference (proxy) nên không query bảng Category
+    private List<Category> resolveActiveCategories(List<Long> categoryIds, Locale locale) {
+        List<Long> activeIds = categoryDictionary.filterActive(categoryIds);
+        if (activeIds.isEmpty()) {
+            String msg = messageSource.getMessage("product.category.not.found", null, locale);
+            throw new ProductCategoryNotFoundException(msg);
+        }
+        return activeIds.stream()
+                .map(categoryRepository::getReferenceById)
+                .toList();
     }
 
     private String sanitizeSearchParam(String param) {
@@ -431,128 +638,171 @@ public class ProductService {
     }
 
     // cau 8
-    public ByteArrayInputStream exportProductsToExcel(
-            String name,
-            String code,
-            Date startDate,
-            Date endDate,
-            Long categoryId
-    ) throws IOException {
-        // 1. Query ALL products matching filters (không phân trang)
-        List<Product> products = productRepository.findAllProductsForExport(
-                "1", name, code, startDate, endDate, categoryId
-        );
 
-        if (products.isEmpty()) {
-            return createEmptyExcel();
-        }
+    // Số dòng POI giữ trong heap, các dòng cũ hơn được flush ra file tạm
+    private static final int EXPORT_ROW_WINDOW = 100;
 
-        // 2. Lấy categories cho products
-        List<Long> productIds = products.stream()
-                .map(Product::getId)
-                .toList();
+    // Số product xử lý mỗi lượt (lấy categories theo lô rồi giải phóng persistence context)
+    private static final int EXPORT_CHUNK_SIZE = 1000;
 
-        List<ProductCategory> productCategories =
-                findProductCategoryByBatches(productIds, 1000);
+    private static final String[] EXPORT_COLUMNS = {"ID", "Tên sản phẩm", "Mã sản phẩm", "Giá",
+            "Số lượng", "Ngày tạo", "Ngày sửa", "Danh mục"};
 
-        Map<Long, String> categoryMap = productCategories.stream()
-                .collect(Collectors.groupingBy(
-                        pc -> pc.getProduct().getId(),
-                        Collectors.mapping(
-                                pc -> pc.getCategory().getName(),
-                                Collectors.joining(", ")
-                        )
-                ));
+    // Độ rộng cố định (số ký tự) thay cho autoSizeColumn - autoSize phải đọc lại toàn bộ dòng
+    private static final int[] EXPORT_COLUMN_WIDTHS = {10, 40, 20, 15, 12, 18, 18, 40};
 
-        // 3. Generate Excel
-        return generateExcel(products, categoryMap);
+    /**
+     * Stream Excel export: đọc product bằng con trỏ (fetch size cố định),
+     * ghi qua cửa sổ SXSSF và đẩy thẳng byte ra output stream của response,
+     * nên bộ nhớ không tăng theo số dòng export.
+     */
+    @Transactional(readOnly = true)
+    public void exportProductsToExcel(
+            String name,
+            String code,
+            Date startDate,
+            Date endDate,
+            Long categoryId,
+            OutputStream out
+    ) throws IOException {
+        exportProductsToExcel(name, code, startDate, endDate, categoryId, out, rows -> { });
     }
 
-
-    // Generate Excel workbook
-
-    private ByteArrayInputStream generateExcel(
-            List<Product> products,
-            Map<Long, String> categoryMap
+    // progress nhận số dòng đã ghi sau mỗi lô (dùng cho export job chạy nền)
+    @Transactional(readOnly = true)
+    public void exportProductsToExcel(
+            String name,
+            String code,
+            Date startDate,
+            Date endDate,
+            Long categoryId,
+            OutputStream out,
+            LongConsumer progress
     ) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXPORT_ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+
+        // Bitmap index loại trước theo status / category / ngày tạo; không còn id nào thì không query
+        Set<Long> ids = narrowByFilterIndex(null, categoryId, startDate, endDate);
 
-        try (Workbook workbook = new XSSFWorkbook();
-             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+        try (Stream<Product> products = ids != null && ids.isEmpty()
+                ? Stream.empty()
+                : productRepository.streamAllProductsForExport("1", name, code, startDate, endDate, categoryId, ids)) {
 
             Sheet sheet = workbook.createSheet("Products");
 
-            // Create header style
+            // Create styles
             CellStyle headerStyle = createHeaderStyle(workbook);
 
-            // Create date style
             CellStyle dateStyle = workbook.createCellStyle();
             CreationHelper createHelper = workbook.getCreationHelper();
             dateStyle.setDataFormat(createHelper.createDataFormat().getFormat("dd/mm/yyyy hh:mm"));
 
-            // Create currency style
             CellStyle currencyStyle = workbook.createCellStyle();
             currencyStyle.setDataFormat(createHelper.createDataFormat().getFormat("#,##0"));
 
             // Create header row
             Row headerRow = sheet.createRow(0);
-            String[] columns = {"ID", "Tên sản phẩm", "Mã sản phẩm", "Giá",
-                    "Số lượng", "Ngày tạo", "Ngày sửa", "Danh mục"};
-
-            for (int i = 0; i < columns.length; i++) {
+            for (int i = 0; i < EXPORT_COLUMNS.length; i++) {
                 Cell cell = headerRow.createCell(i);
-                cell.setCellValue(columns[i]);
+                cell.setCellValue(EXPORT_COLUMNS[i]);
                 cell.setCellStyle(headerStyle);
+                sheet.setColumnWidth(i, EXPORT_COLUMN_WIDTHS[i] * 256);
             }
 
-            // Fill data rows
+            // Fill data rows theo từng lô
             int rowIdx = 1;
-            for (Product product : products) {
-                Row row = sheet.createRow(rowIdx++);
+            List<Product> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == EXPORT_CHUNK_SIZE) {
+                    rowIdx = writeProductRows(sheet, chunk, rowIdx, dateStyle, currencyStyle);
+                    progress.accept(rowIdx - 1);
+                    chunk.clear();
+                    // detach các entity đã ghi để persistence context không phình theo số dòng
+                    entityManager.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                rowIdx = writeProductRows(sheet, chunk, rowIdx, dateStyle, currencyStyle);
+                progress.accept(rowIdx - 1);
+            }
 
-                // ID
-                row.createCell(0).setCellValue(product.getId());
+            log.debug("Exported {} products to excel", rowIdx - 1);
 
-                // Tên sản phẩm
-                row.createCell(1).setCellValue(product.getName());
+            workbook.write(out);
+            out.flush();
+        } finally {
+            // Xóa các file tạm SXSSF
+            workbook.dispose();
+            workbook.close();
+        }
+    }
 
-                // Mã sản phẩm
-                row.createCell(2).setCellValue(product.getProductCode());
+    // Ghi 1 lô product, trả về index dòng tiếp theo
+    private int writeProductRows(
+            Sheet sheet,
+            List<Product> products,
+            int rowIdx,
+            CellStyle dateStyle,
+            CellStyle currencyStyle
+    ) {
+        List<Long> productIds = products.stream()
+                .map(Product::getId)
+                .toList();
 
-                // Giá
-                Cell priceCell = row.createCell(3);
-                priceCell.setCellValue(product.getPrice());
-                priceCell.setCellStyle(currencyStyle);
+        // Chỉ lấy cặp (product id, category id), tên category lấy từ dictionary
+        Map<Long, String> categoryMap = productRepository.findCategoryLinksByProductIds(productIds).stream()
+                .filter(link -> categoryDictionary.activeName(link.categoryId()) != null)
+                .collect(Collectors.groupingBy(
+                        ProductCategoryLink::productId,
+                        Collectors.mapping(
+                                link -> categoryDictionary.activeName(link.categoryId()),
+                                Collectors.joining(", ")
+                        )
+                ));
 
-                // Số lượng
-                row.createCell(4).setCellValue(product.getQuantity());
+        for (Product product : products) {
+            Row row = sheet.createRow(rowIdx++);
 
-                // Ngày tạo
-                Cell createdDateCell = row.createCell(5);
-                if (product.getCreatedDate() != null) {
-                    createdDateCell.setCellValue(product.getCreatedDate());
-                    createdDateCell.setCellStyle(dateStyle);
-                }
+            // ID
+            row.createCell(0).setCellValue(product.getId());
 
-                // Ngày sửa
-                Cell modifiedDateCell = row.createCell(6);
-                if (product.getModifiedDate() != null) {
-                    modifiedDateCell.setCellValue(product.getModifiedDate());
-                    modifiedDateCell.setCellStyle(dateStyle);
-                }
+            // Tên sản phẩm
+            row.createCell(1).setCellValue(product.getName());
+
+            // Mã sản phẩm
+            row.createCell(2).setCellValue(product.getProductCode());
 
-                // Danh mục
-                String categories = categoryMap.getOrDefault(product.getId(), "");
-                row.createCell(7).setCellValue(categories);
+            // Giá
+            Cell priceCell = row.createCell(3);
+            priceCell.setCellValue(product.getPrice());
+            priceCell.setCellStyle(currencyStyle);
+
+            // Số lượng
+            row.createCell(4).setCellValue(product.getQuantity());
+
+            // Ngày tạo
+            Cell createdDateCell = row.createCell(5);
+            if (product.getCreatedDate() != null) {
+                createdDateCell.setCellValue(product.getCreatedDate());
+                createdDateCell.setCellStyle(dateStyle);
             }
 
-            // Auto-size columns
-            for (int i = 0; i < columns.length; i++) {
-                sheet.autoSizeColumn(i);
+            // Ngày sửa
+            Cell modifiedDateCell = row.createCell(6);
+            if (product.getModifiedDate() != null) {
+                modifiedDateCell.setCellValue(product.getModifiedDate());
+                modifiedDateCell.setCellStyle(dateStyle);
             }
 
-            workbook.write(out);
-            return new ByteArrayInputStream(out.toByteArray());
+            // Danh mục
+            String categories = categoryMap.getOrDefault(product.getId(), "");
+            row.createCell(7).setCellValue(categories);
         }
+
+        return rowIdx;
     }
 
     /**
@@ -576,28 +826,6 @@ public class ProductService {
         return headerStyle;
     }
 
-    /**
-     * Create empty Excel when no data
-     */
-    private ByteArrayInputStream createEmptyExcel() throws IOException {
-        try (Workbook workbook = new XSSFWorkbook();
-             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-
-            Sheet sheet = workbook.createSheet("Products");
-            Row headerRow = sheet.createRow(0);
-
-            String[] columns = {"ID", "Tên sản phẩm", "Mã sản phẩm", "Giá",
-                    "Số lượng", "Ngày tạo", "Ngày sửa", "Danh mục"};
-
-            for (int i = 0; i < columns.length; i++) {
-                headerRow.createCell(i).setCellValue(columns[i]);
-            }
-
-            workbook.write(out);
-            return new ByteArrayInputStream(out.toByteArray());
-        }
-    }
-
 
     // bai 9
 
@@ -620,15 +848,15 @@ public class ProductService {
         }
 
         // Validate categories tồn tại với status = 1
-        List<Category> newCategories = categoryRepository.getListIdWithStatus(req.getCategoryIds(), "1");
-        if (newCategories.isEmpty()) {
-            String msg = messageSource.getMessage("product.category.not.found", null, locale);
-            throw new ProductCategoryNotFoundException(msg);
-        }
+        List<Category> newCategories = resolveActiveCategories(req.getCategoryIds(), locale);
 
         // Update basic fields
         productMapper.updateProductFromRequest(req, product);
 
+        if (Boolean.TRUE.equals(req.getIncremental())) {
+            return updateProductIncremental(product, req, newCategories, locale);
+        }
+
         // Tracking for rollback
         Map<Long, String> modifiedCategories = new HashMap<>();
         List<String> savedFilePaths = new ArrayList<>();
@@ -676,6 +904,14 @@ public class ProductService {
         // Save final changes
         Product savedProduct = productRepository.save(product);
 
+        TransactionHooks.afterCommit(() -> {
+            productSearchIndex.index(savedProduct.getId(), savedProduct.getName(), savedProduct.getProductCode());
+            // Cách update cũ giữ lại liên kết category bị bỏ => đọc lại đúng các liên kết đã commit
+            productFilterIndex.put(savedProduct.getId(), savedProduct.getStatus(), savedProduct.getCreatedDate(),
+                    productRepository.findCategoryIdsByProductId(savedProduct.getId()));
+        });
+        catalogVersion.bumpAfterCommit();
+
         ProductResponse productResponse = productMapper.toResponse(savedProduct);
 
         return new ApiResponse<>(
@@ -685,6 +921,131 @@ public class ProductService {
         );
     }
 
+    /**
+     * Update theo diff: chỉ gỡ/thêm các liên kết category thay đổi, chỉ xoá mềm/thêm các ảnh thay đổi.
+     * Không có danh sách bù trừ thủ công: lỗi thì transaction rollback, file mới ghi được xoá khi rollback.
+     */
+    private ApiResponse<ProductResponse> updateProductIncremental(
+            Product product,
+            ProductRequest req,
+            List<Category> categories,
+            Locale locale
+    ) {
+        List<String> savedFilePaths = new ArrayList<>();
+        TransactionHooks.afterRollback(() -> cleanupFiles(savedFilePaths));
+
+        diffProductCategories(product, categories);
+
+        // Không gửi images lẫn keepImageUuids => giữ nguyên ảnh
+        if ((req.getImages() != null && !req.getImages().isEmpty()) || req.getKeepImageUuids() != null) {
+            try {
+                diffProductImages(product, req, locale, savedFilePaths);
+            } catch (IOException e) {
+                String error = messageSource.getMessage("error.product.image.save", null, locale);
+                log.error("Failed to save images for product: {}", product.getId(), e);
+                throw new RuntimeException(error, e);
+            }
+        }
+
+        Product savedProduct = productRepository.save(product);
+
+        List<Long> categoryIds = categories.stream().map(Category::getId).toList();
+        TransactionHooks.afterCommit(() -> {
+            productSearchIndex.index(savedProduct.getId(), savedProduct.getName(), savedProduct.getProductCode());
+            productFilterIndex.put(savedProduct.getId(), savedProduct.getStatus(), savedProduct.getCreatedDate(),
+                    categoryIds);
+        });
+        catalogVersion.bumpAfterCommit();
+
+        return new ApiResponse<>(
+                200,
+                messageSource.getMessage("product.update.success", null, locale),
+                productMapper.toResponse(savedProduct)
+        );
+    }
+
+    // Gỡ liên kết category không còn trong request (1 câu DELETE), thêm liên kết mới
+    private void diffProductCategories(Product product, List<Category> categories) {
+        Set<Long> existingIds = new HashSet<>(productRepository.findCategoryIdsByProductId(product.getId()));
+        Set<Long> desiredIds = categories.stream()
+                .map(Category::getId)
+                .collect(Collectors.toSet());
+
+        List<Long> removedIds = existingIds.stream()
+                .filter(categoryId -> !desiredIds.contains(categoryId))
+                .toList();
+        if (!removedIds.isEmpty()) {
+            productRepository.deleteCategoryLinks(product.getId(), removedIds);
+        }
+
+        Date now = new Date(System.currentTimeMillis());
+        for (Category category : categories) {
+            if (existingIds.add(category.getId())) {
+                ProductCategory productCategory = new ProductCategory();
+                productCategory.setId(new ProductCategoryKey());
+                productCategory.setProduct(product);
+                productCategory.setCategory(category);
+                productCategory.setCreatedDate(now);
+                productCategory.setModifiedDate(now);
+                entityManager.persist(productCategory);
+            }
+        }
+
+        log.debug("Product {} categories: removed {}, total {}", product.getId(), removedIds, desiredIds.size());
+    }
+
+    // Ảnh gửi lại trùng nội dung (content hash) với ảnh đang active thì giữ ảnh cũ, không insert;
+    // ảnh active không được giữ (không trong keepImageUuids, không gửi lại) thì xoá mềm bằng 1 câu UPDATE
+    private void diffProductImages(
+            Product product,
+            ProductRequest req,
+            Locale locale,
+            List<String> savedFilePaths
+    ) throws IOException {
+        List<ProductImage> activeImages = productImageRepository.findByProductIdsAndStatus(List.of(product.getId()), "1");
+
+        Set<String> keepUuids = req.getKeepImageUuids() == null
+                ? new HashSet<>()
+                : new HashSet<>(req.getKeepImageUuids());
+        Map<String, ProductImage> activeByHash = new HashMap<>();
+        for (ProductImage image : activeImages) {
+            if (image.getContentHash() != null) {
+                activeByHash.putIfAbsent(image.getContentHash(), image);
+            }
+        }
+
+        // File trùng nội dung đã có trên đĩa nên saveImages không ghi lại
+        List<ProductImage> incoming = (req.getImages() == null || req.getImages().isEmpty())
+                ? Collections.emptyList()
+                : saveImages(req.getImages(), product, locale, savedFilePaths);
+
+        Date now = new Date(System.currentTimeMillis());
+        Set<String> insertedHashes = new HashSet<>();
+        List<ProductImage> toInsert = new ArrayList<>();
+        for (ProductImage image : incoming) {
+            ProductImage existing = activeByHash.get(image.getContentHash());
+            if (existing != null) {
+                keepUuids.add(existing.getUuid());
+            } else if (insertedHashes.add(image.getContentHash())) {
+                image.setStatus("1");
+                image.setCreatedDate(now);
+                image.setModifiedDate(now);
+                toInsert.add(image);
+            }
+        }
+
+        List<String> removedUuids = activeImages.stream()
+                .map(ProductImage::getUuid)
+                .filter(uuid -> !keepUuids.contains(uuid))
+                .toList();
+        if (!removedUuids.isEmpty()) {
+            productImageRepository.updateStatusByProductIdAndUuids(product.getId(), removedUuids, "0", now);
+        }
+        productImageRepository.saveAll(toInsert);
+
+        log.debug("Product {} images: inserted {}, removed {}", product.getId(), toInsert.size(), removedUuids.size());
+    }
+
     /**
      * Update product categories with rollback support
      * - Soft deletes removed categories
@@ -724,6 +1085,8 @@ public class ProductService {
                     // Trước bị xóa mềm, đổi lại thành 1
                     existingPC.getCategory().setStatus("1");
                     existingPC.setModifiedDate(now);
+                    // Status category đổi => cập nhật dictionary (active name, filter) sau commit
+                    categoryDictionary.putAfterCommit(existingPC.getCategory());
 
                     log.debug("Restored category {} for product {}", categoryId, product.getId());
                 }
@@ -736,6 +1099,8 @@ public class ProductService {
                     // Soft delete
                     existingPC.getCategory().setStatus("0");
                     existingPC.setModifiedDate(now);
+                    // Status category đổi => cập nhật dictionary (active name, filter) sau commit
+                    categoryDictionary.putAfterCommit(existingPC.getCategory());
 
                     log.debug("Soft deleted category {} for product {}", categoryId, product.getId());
                 }
@@ -748,9 +1113,11 @@ public class ProductService {
                 // Track as new category (use null to indicate it's new)
                 modifiedCategories.put(newCategoryId, null);
 
-                // Tạo liên kết mới
-                Category category = categoryRepository.findById(newCategoryId)
-                        .orElseThrow(() -> new RuntimeException("Category not found: " + newCategoryId));
+                // Tạo liên kết mới (kiểm tra qua dictionary, lấy reference không cần query)
+                if (categoryDictionary.get(newCategoryId).isEmpty()) {
+                    throw new RuntimeException("Category not found: " + newCategoryId);
+                }
+                Category category = categoryRepository.getReferenceById(newCategoryId);
 
                 ProductCategory newPC = new ProductCategory();
                 newPC.setProduct(product);
@@ -887,8 +1254,84 @@ public class ProductService {
         productExists.setStatus("0");
         productExists.setModifiedDate(new java.sql.Date(System.currentTimeMillis()));
         productRepository.save(productExists);
+        TransactionHooks.afterCommit(() -> {
+            productSearchIndex.remove(id);
+            productFilterIndex.setStatus(List.of(id), "0");
+        });
+        catalogVersion.bumpAfterCommit();
         return messageSource.getMessage("delete.success", null, locale);
     }
 
+    // Số id mỗi câu UPDATE ... IN (...) / mỗi transaction khi xoá hàng loạt
+    private static final int BULK_CHUNK_SIZE = 1000;
+
+    /**
+     * Xoá mềm hàng loạt theo danh sách id hoặc theo bộ lọc của /search.
+     * Mỗi đoạn BULK_CHUNK_SIZE id là 1 transaction gồm 2 câu UPDATE (Product + Product_Image).
+     */
+    public BulkDeleteResult bulkSoftDeleteProducts(ProductBulkDeleteRequest req, Locale locale) {
+        boolean hasIds = req.getIds() != null && !req.getIds().isEmpty();
+        boolean hasFilter = sanitizeSearchParam(req.getName()) != null || sanitizeSearchParam(req.getCode()) != null
+                            || req.getStartDate() != null || req.getEndDate() != null || req.getCategoryId() != null;
+
+        // Không cho bộ lọc rỗng (sẽ xoá toàn bộ product)
+        if (hasIds == hasFilter) {
+            String msg = messageSource.getMessage("error.product.bulkdelete.criteria", null, locale);
+            throw new InvalidBulkDeleteRequestException(msg);
+        }
+
+        int deletedProducts = 0;
+        int deletedImages = 0;
+
+        if (hasIds) {
+            List<Long> ids = req.getIds().stream()
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .toList();
+            for (int i = 0; i < ids.size(); i += BULK_CHUNK_SIZE) {
+                int[] counts = softDeleteChunk(ids.subList(i, Math.min(i + BULK_CHUNK_SIZE, ids.size())));
+                deletedProducts += counts[0];
+                deletedImages += counts[1];
+            }
+        } else {
+            String name = sanitizeSearchParam(req.getName());
+            String code = sanitizeSearchParam(req.getCode());
+            Long afterId = null;
+            while (true) {
+                List<Long> ids = productRepository.findIdsForBulkUpdate(
+                        "1", name, code, req.getStartDate(), req.getEndDate(), req.getCategoryId(),
+                        afterId, PageRequest.of(0, BULK_CHUNK_SIZE)
+                );
+                if (ids.isEmpty()) {
+                    break;
+                }
+                int[] counts = softDeleteChunk(ids);
+                deletedProducts += counts[0];
+                deletedImages += counts[1];
+                afterId = ids.get(ids.size() - 1);
+            }
+        }
+
+        log.info("Bulk soft delete: {} products, {} images", deletedProducts, deletedImages);
+        return new BulkDeleteResult(deletedProducts, deletedImages);
+    }
+
+    // Trả về {số product, số ảnh} đã xoá mềm trong đoạn
+    private int[] softDeleteChunk(List<Long> ids) {
+        return transactionTemplate.execute(status -> {
+            java.sql.Date now = new java.sql.Date(System.currentTimeMillis());
+            int products = productRepository.updateStatusByIds(ids, "1", "0", now);
+            int images = productImageRepository.updateStatusByProductIds(ids, "0", now);
+
+            List<Long> removedIds = List.copyOf(ids);
+            TransactionHooks.afterCommit(() -> {
+                removedIds.forEach(productSearchIndex::remove);
+                productFilterIndex.setStatus(removedIds, "0");
+            });
+            catalogVersion.bumpAfterCommit();
+            return new int[]{products, images};
+        });
+    }
+
 
 }
@@ -0,0 +1,283 @@
+package com.example.nodotest.Service;
+
+import com.example.nodotest.Exception.ErrorExcel.InvalidDateRangeException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Export product / category dạng CSV hoặc NDJSON (mỗi dòng 1 object JSON) cho các pipeline đọc dữ liệu.
+ * Đọc thẳng ResultSet bằng JDBC (fetch size cố định => driver MariaDB stream từng lô, không load hết)
+ * và ghi từng dòng ra output stream, không qua entity / POI nên nhanh hơn export Excel rất nhiều.
+ * Bộ lọc giống findAllForExport / streamAllProductsForExport.
+ */
+@Service
+@Slf4j
+public class TabularExportService {
+
+    public static final String TEXT_CSV_VALUE = "text/csv";
+
+    public enum ExportFormat {
+        CSV, NDJSON
+    }
+
+    private enum ColumnType {
+        LONG, DOUBLE, STRING, DATE
+    }
+
+    // header: tên cột CSV, field: key trong NDJSON; thứ tự cột giống select
+    private record Column(String header, String field, ColumnType type) {
+    }
+
+    // Cùng cột với file Excel (ProductService.EXPORT_COLUMNS) để import lại được
+    private static final List<Column> PRODUCT_COLUMNS = List.of(
+            new Column("ID", "id", ColumnType.LONG),
+            new Column("Tên sản phẩm", "name", ColumnType.STRING),
+            new Column("Mã sản phẩm", "productCode", ColumnType.STRING),
+            new Column("Giá", "price", ColumnType.DOUBLE),
+            new Column("Số lượng", "quantity", ColumnType.LONG),
+            new Column("Ngày tạo", "createdDate", ColumnType.DATE),
+            new Column("Ngày sửa", "modifiedDate", ColumnType.DATE),
+            new Column("Danh mục", "categories", ColumnType.STRING)
+    );
+
+    private static final List<Column> CATEGORY_COLUMNS = List.of(
+            new Column("ID", "id", ColumnType.LONG),
+            new Column("Tên", "name", ColumnType.STRING),
+            new Column("Mã", "categoryCode", ColumnType.STRING),
+            new Column("Mô tả", "description", ColumnType.STRING),
+            new Column("Ngày tạo", "createdDate", ColumnType.DATE),
+            new Column("Ngày sửa", "modifiedDate", ColumnType.DATE),
+            new Column("Người tạo", "createdBy", ColumnType.STRING),
+            new Column("Người sửa", "modifiedBy", ColumnType.STRING)
+    );
+
+    // Danh mục gom bằng subquery theo PK Product_Category, thay cho DISTINCT + join
+    private static final String PRODUCT_EXPORT_SQL =
+            "select p.id, p.name, p.product_code, p.price, p.quantity, p.created_date, p.modified_date, " +
+            "(select group_concat(c.name order by c.id separator ', ') " +
+            " from Product_Category pc join Category c on c.id = pc.category_id " +
+            " where pc.product_id = p.id and c.status = '1') as categories " +
+            "from Product p " +
+            "where p.status = '1' " +
+            "and (:name is null or lower(p.name) like lower(concat('%', :name, '%'))) " +
+            "and (:code is null or lower(p.product_code) like lower(concat('%', :code, '%'))) " +
+            "and (:startDate is null or p.created_date >= :startDate) " +
+            "and (:endDate is null or p.created_date <= :endDate) " +
+            "and (:categoryId is null or exists (select 1 from Product_Category fpc " +
+            " where fpc.product_id = p.id and fpc.category_id = :categoryId)) " +
+            "order by p.created_date desc, p.id desc";
+
+    private static final String CATEGORY_EXPORT_SQL =
+            "select c.id, c.name, c.category_code, c.description, c.created_date, c.modified_date, " +
+            "c.created_by, c.modified_by " +
+            "from Category c " +
+            "where c.status = '1' " +
+            "and (:name is null or lower(c.name) like lower(concat('%', :name, '%'))) " +
+            "and (:categoryCode is null or c.category_code = :categoryCode) " +
+            "and (:startDate is null or c.created_date >= :startDate) " +
+            "and (:endDate is null or c.created_date <= :endDate) " +
+            "order by c.created_date desc, c.id desc";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public TabularExportService(DataSource dataSource,
+                                ObjectMapper objectMapper,
+                                @Value("${export.stream.fetch-size:1000}") int fetchSize) {
+        // JdbcTemplate riêng để đặt fetch size, không ảnh hưởng bean dùng chung
+        JdbcTemplate streamingTemplate = new JdbcTemplate(dataSource);
+        streamingTemplate.setFetchSize(fetchSize);
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(streamingTemplate);
+        this.objectMapper = objectMapper;
+    }
+
+    // Gọi trước khi trả StreamingResponseBody, vì lỗi trong lúc stream thì header đã gửi đi rồi
+    public void validateDateRange(Date startDate, Date endDate) {
+        if (startDate != null && endDate != null && startDate.after(endDate)) {
+            throw new InvalidDateRangeException("Ngày bắt đầu phải trước ngày kết thúc");
+        }
+    }
+
+    public void exportProducts(ExportFormat format, String name, String code, Date startDate, Date endDate,
+                               Long categoryId, OutputStream out) throws IOException {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("name", name)
+                .addValue("code", code)
+                .addValue("startDate", startDate)
+                .addValue("endDate", endDate)
+                .addValue("categoryId", categoryId);
+        long rows = export(format, PRODUCT_EXPORT_SQL, params, PRODUCT_COLUMNS, out);
+        log.debug("Exported {} products as {}", rows, format);
+    }
+
+    public void exportCategories(ExportFormat format, String name, String categoryCode, Date startDate, Date endDate,
+                                 OutputStream out) throws IOException {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("name", name)
+                .addValue("categoryCode", categoryCode)
+                .addValue("startDate", startDate)
+                .addValue("endDate", endDate);
+        long rows = export(format, CATEGORY_EXPORT_SQL, params, CATEGORY_COLUMNS, out);
+        log.debug("Exported {} categories as {}", rows, format);
+    }
+
+    private long export(ExportFormat format, String sql, MapSqlParameterSource params, List<Column> columns,
+                        OutputStream out) throws IOException {
+        RowWriter writer = format == ExportFormat.CSV
+                ? new CsvRowWriter(out, columns)
+                : new NdjsonRowWriter(objectMapper, out, columns);
+        long[] rows = {0};
+        try {
+            writer.start();
+            jdbcTemplate.query(sql, params, rs -> {
+                try {
+                    writer.row(rs);
+                    rows[0]++;
+                } catch (IOException e) {
+                    // Client ngắt kết nối => dừng đọc ResultSet luôn
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+
+    private interface RowWriter {
+        void start() throws IOException;
+
+        void row(ResultSet rs) throws IOException, SQLException;
+
+        void finish() throws IOException;
+    }
+
+    // RFC 4180: phân cách dấu phẩy, xuống dòng CRLF, giá trị có , " hoặc xuống dòng thì bọc trong ""
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+        private final List<Column> columns;
+
+        private CsvRowWriter(OutputStream out, List<Column> columns) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            this.columns = columns;
+        }
+
+        @Override
+        public void start() throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeValue(columns.get(i).header());
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void row(ResultSet rs) throws IOException, SQLException {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object value = rs.getObject(i + 1);
+                if (value == null) {
+                    continue;
+                }
+                if (columns.get(i).type() == ColumnType.DOUBLE) {
+                    // Tránh dạng 1.0E7 của Double.toString
+                    writer.write(BigDecimal.valueOf(rs.getDouble(i + 1)).toPlainString());
+                } else {
+                    writeValue(value.toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        private void writeValue(String value) throws IOException {
+            boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                            || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    // Mỗi dòng 1 object JSON, kết thúc bằng \n; ngày dạng yyyy-MM-dd
+    private static final class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+        private final List<Column> columns;
+
+        private NdjsonRowWriter(ObjectMapper objectMapper, OutputStream out, List<Column> columns) {
+            try {
+                this.generator = objectMapper.getFactory().createGenerator(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // Không tự chèn dấu cách giữa các object gốc, không đóng output stream của response
+            this.generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.columns = columns;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void row(ResultSet rs) throws IOException, SQLException {
+            generator.writeStartObject();
+            for (int i = 0; i < columns.size(); i++) {
+                Column column = columns.get(i);
+                Object value = rs.getObject(i + 1);
+                if (value == null) {
+                    generator.writeNullField(column.field());
+                    continue;
+                }
+                switch (column.type()) {
+                    case LONG -> generator.writeNumberField(column.field(), rs.getLong(i + 1));
+                    case DOUBLE -> generator.writeNumberField(column.field(), rs.getDouble(i + 1));
+                    case DATE -> generator.writeStringField(column.field(), rs.getDate(i + 1).toString());
+                    default -> generator.writeStringField(column.field(), value.toString());
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.close();
+        }
+    }
+}
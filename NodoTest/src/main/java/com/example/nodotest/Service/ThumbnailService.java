@@ -0,0 +1,208 @@
+package com.example.nodotest.Service;
+
+import com.example.nodotest.Repository.CategoryImageRepository;
+import com.example.nodotest.Repository.ProductImageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sinh ảnh thu nhỏ (small ~150px, medium ~480px) cho ảnh vừa upload, chạy nền sau khi transaction commit.
+ * Chỉ dùng ImageIO + Graphics2D (không thư viện ngoài); định dạng ImageIO không đọc được (vd webp) thì bỏ qua,
+ * endpoint /api/images vẫn trả ảnh gốc khi chưa có thumbnail.
+ * Thumbnail đặt trong thư mục con "derivatives" cạnh ảnh gốc, đặt tên theo content hash nên ảnh trùng dùng chung.
+ */
+@Service
+@Slf4j
+public class ThumbnailService {
+
+    public enum ImageOwner {
+        PRODUCT, CATEGORY
+    }
+
+    private static final int SMALL_SIZE = 150;
+    private static final int MEDIUM_SIZE = 480;
+    private static final String DERIVATIVE_FOLDER = "derivatives";
+
+    private final ThreadPoolExecutor executor;
+    private final ProductImageRepository productImageRepository;
+    private final CategoryImageRepository categoryImageRepository;
+
+    public ThumbnailService(@Value("${image.thumbnail.parallelism:2}") int parallelism,
+                            ProductImageRepository productImageRepository,
+                            CategoryImageRepository categoryImageRepository) {
+        this.productImageRepository = productImageRepository;
+        this.categoryImageRepository = categoryImageRepository;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                parallelism, parallelism,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(500),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-thumbnail-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    // Ưu tiên thấp hơn luồng xử lý request
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                },
+                // Hàng đợi đầy thì bỏ qua, ảnh vẫn hiển thị bằng bản gốc
+                (runnable, pool) -> log.warn("Thumbnail queue is full, skipping task")
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Đưa các ảnh vừa lưu vào hàng đợi sinh thumbnail. Gọi qua TransactionHooks.afterCommit
+     * để không sinh thumbnail cho ảnh của transaction bị rollback.
+     */
+    public void generateAsync(ImageOwner owner, List<ImageIngestionService.StoredImage> images) {
+        for (ImageIngestionService.StoredImage image : images) {
+            executor.execute(() -> generate(owner, image));
+        }
+    }
+
+    private void generate(ImageOwner owner, ImageIngestionService.StoredImage image) {
+        try {
+            Path original = image.path();
+            Path folder = original.getParent().resolve(DERIVATIVE_FOLDER);
+            String baseName = image.contentHash() != null ? image.contentHash() : image.uuid();
+
+            Path small = findExisting(folder, baseName + "-small");
+            Path medium = findExisting(folder, baseName + "-medium");
+
+            if (small == null || medium == null) {
+                // Đọc 1 lần (có subsampling để đỡ tốn RAM), dùng cho cả 2 kích thước
+                BufferedImage source = read(original, MEDIUM_SIZE * 2);
+                if (source == null) {
+                    log.info("Unsupported image format, no thumbnail for: {}", original);
+                    return;
+                }
+                Files.createDirectories(folder);
+                BufferedImage mediumImage = scale(source, MEDIUM_SIZE);
+                if (medium == null) {
+                    medium = write(mediumImage, folder, baseName + "-medium");
+                }
+                if (small == null) {
+                    small = write(scale(mediumImage, SMALL_SIZE), folder, baseName + "-small");
+                }
+            }
+
+            int updated = owner == ImageOwner.PRODUCT
+                    ? productImageRepository.updateDerivativesByUuid(image.uuid(), small.toString(), medium.toString())
+                    : categoryImageRepository.updateDerivativesByUuid(image.uuid(), small.toString(), medium.toString());
+            log.debug("Thumbnails ready for {} image {} ({} row)", owner, image.uuid(), updated);
+        } catch (Exception e) {
+            // Lỗi thumbnail không ảnh hưởng tới ảnh gốc
+            log.error("Failed to generate thumbnails for image {}", image.uuid(), e);
+        }
+    }
+
+    private Path findExisting(Path folder, String baseName) {
+        for (String extension : List.of(".jpg", ".png")) {
+            Path path = folder.resolve(baseName + extension);
+            if (Files.exists(path)) {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    // Đọc ảnh, bỏ bớt pixel khi đọc (subsampling) nếu ảnh lớn hơn nhiều so với kích thước cần
+    private BufferedImage read(Path file, int targetSize) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int subsampling = Math.max(1, longestSide / targetSize);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Thu nhỏ giữ tỉ lệ, giảm dần mỗi lần 1/2 để ảnh không bị răng cưa; không phóng to ảnh nhỏ
+    private BufferedImage scale(BufferedImage source, int maxSize) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double ratio = Math.min(1d, (double) maxSize / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+
+        boolean hasAlpha = source.getColorModel().hasAlpha();
+        int type = hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D g = step.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+
+        return current;
+    }
+
+    // Ảnh có nền trong suốt => png, còn lại => jpg; ghi file tạm rồi move atomic
+    private Path write(BufferedImage image, Path folder, String baseName) throws IOException {
+        String format = image.getColorModel().hasAlpha() ? "png" : "jpg";
+        Path destination = folder.resolve(baseName + "." + format);
+
+        Path temp = Files.createTempFile(folder, ".thumb-", ".tmp");
+        try {
+            if (!ImageIO.write(image, format, temp.toFile())) {
+                throw new IOException("No ImageIO writer for format: " + format);
+            }
+            Files.move(temp, destination, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return destination;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,8 @@
+-- Hash noi dung file anh: anh trung noi dung dung chung 1 file, index de dem so anh con tham chieu file.
+-- IF NOT EXISTS: DB da them cot / index bang tay thi bo qua.
+
+ALTER TABLE Product_Image ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+CREATE INDEX IF NOT EXISTS idx_product_image_content_hash ON Product_Image (content_hash);
+
+ALTER TABLE Category_Image ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+CREATE INDEX IF NOT EXISTS idx_category_image_content_hash ON Category_Image (content_hash);
@@ -0,0 +1,8 @@
+-- Duong dan anh thumbnail / medium sinh luc upload.
+-- IF NOT EXISTS: DB da them cot bang tay thi bo qua.
+
+ALTER TABLE Product_Image ADD COLUMN IF NOT EXISTS thumbnail_path VARCHAR(1000);
+ALTER TABLE Product_Image ADD COLUMN IF NOT EXISTS medium_path VARCHAR(1000);
+
+ALTER TABLE Category_Image ADD COLUMN IF NOT EXISTS thumbnail_path VARCHAR(1000);
+ALTER TABLE Category_Image ADD COLUMN IF NOT EXISTS medium_path VARCHAR(1000);
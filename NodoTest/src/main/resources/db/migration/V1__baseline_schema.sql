@@ -0,0 +1,74 @@
+-- Schema ban dau cua NodoTest (cac bang tao tay truoc khi dung Flyway).
+-- DB da co bang tao tay thi Flyway danh dau V1 la baseline (spring.flyway.baseline-on-migrate) va bo qua file nay.
+
+CREATE TABLE IF NOT EXISTS Category (
+    id            BIGINT        NOT NULL AUTO_INCREMENT,
+    name          VARCHAR(255)  NOT NULL,
+    category_code VARCHAR(100)  NOT NULL,
+    description   VARCHAR(1000),
+    status        ENUM('0', '1') DEFAULT '1',
+    created_date  DATE,
+    modified_date DATE,
+    created_by    VARCHAR(100),
+    modified_by   VARCHAR(100),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_category_code UNIQUE (category_code)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS Category_Image (
+    id             BIGINT        NOT NULL AUTO_INCREMENT,
+    category_id    BIGINT        NOT NULL,
+    name           VARCHAR(255)  NOT NULL,
+    url            VARCHAR(1000) NOT NULL,
+    uuid           VARCHAR(36)   NOT NULL,
+    status         ENUM('0', '1') DEFAULT '1',
+    created_date   DATE,
+    modified_date  DATE,
+    created_by     VARCHAR(100),
+    modified_by    VARCHAR(100),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_category_image_uuid UNIQUE (uuid),
+    CONSTRAINT fk_category_image_category FOREIGN KEY (category_id) REFERENCES Category (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS Product (
+    id            BIGINT        NOT NULL AUTO_INCREMENT,
+    name          VARCHAR(255)  NOT NULL,
+    description   VARCHAR(1000),
+    price         DOUBLE        NOT NULL,
+    product_code  VARCHAR(100)  NOT NULL,
+    quantity      BIGINT,
+    status        ENUM('0', '1') DEFAULT '1',
+    created_date  DATE,
+    modified_date DATE,
+    created_by    VARCHAR(100),
+    modified_by   VARCHAR(100),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_product_code UNIQUE (product_code)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS Product_Category (
+    product_id    BIGINT NOT NULL,
+    category_id   BIGINT NOT NULL,
+    created_date  DATE,
+    modified_date DATE,
+    PRIMARY KEY (product_id, category_id),
+    CONSTRAINT fk_product_category_product FOREIGN KEY (product_id) REFERENCES Product (id),
+    CONSTRAINT fk_product_category_category FOREIGN KEY (category_id) REFERENCES Category (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS Product_Image (
+    id             BIGINT        NOT NULL AUTO_INCREMENT,
+    product_id     BIGINT,
+    name           VARCHAR(255)  NOT NULL,
+    url            VARCHAR(1000) NOT NULL,
+    uuid           VARCHAR(36)   NOT NULL,
+    status         ENUM('0', '1') DEFAULT '1',
+    created_date   DATE,
+    modified_date  DATE,
+    created_by     VARCHAR(100),
+    modified_by    VARCHAR(100),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_product_image_uuid UNIQUE (uuid),
+    CONSTRAINT fk_product_image_product FOREIGN KEY (product_id) REFERENCES Product (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
@@ -0,0 +1,18 @@
+-- Index cho cac dieu kien loc / sap xep chay o moi request (kiem tra bang RepositoryExplainTest, RepositoryIndexUsageTest).
+-- IF NOT EXISTS: DB tao tay co the da co san 1 vai index.
+
+-- Danh sach / cursor product: status = '1' + khoang ngay, ORDER BY created_date DESC, id DESC
+CREATE INDEX IF NOT EXISTS idx_product_status_created ON Product (status, created_date, id);
+
+-- Product_Category: PK (product_id, category_id) da phuc vu tra category theo product;
+-- loc product theo category (categoryId, facet) can chieu nguoc lai
+CREATE INDEX IF NOT EXISTS idx_product_category_category ON Product_Category (category_id, product_id);
+
+-- Anh active cua 1 trang product
+CREATE INDEX IF NOT EXISTS idx_product_image_product_status ON Product_Image (product_id, status);
+
+-- Danh sach category: status + ngay tao
+CREATE INDEX IF NOT EXISTS idx_category_status_created ON Category (status, created_date, id);
+
+-- Anh active theo category
+CREATE INDEX IF NOT EXISTS idx_category_image_category_status ON Category_Image (category_id, status);
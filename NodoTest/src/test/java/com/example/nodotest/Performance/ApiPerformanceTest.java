@@ -0,0 +1,248 @@
+package com.example.nodotest.Performance;
+
+import com.example.nodotest.Service.CategoryDictionary;
+import com.example.nodotest.Service.ProductFilterIndex;
+import com.example.nodotest.Service.ProductSearchIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Đo p50 / p99 và throughput của search, danh sách category và 2 endpoint export
+ * khi gọi đồng thời, trên dữ liệu giả lập (PerfDataGenerator) trong H2.
+ * Kết quả ghi ra file JSON (perf.report.path) để so sánh giữa các lần chạy.
+ * Chỉ chạy với: mvn -Pperf test
+ */
+@Tag("performance")
+@ActiveProfiles("perf")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ApiPerformanceTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ApiPerformanceTest.class);
+
+    // 1 kịch bản tải: sinh path theo số thứ tự request (cố định theo seed)
+    private record Scenario(String name, int requests, IntFunction<String> path) {
+    }
+
+    private static final class Result {
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final AtomicLong errors = new AtomicLong();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private CategoryDictionary categoryDictionary;
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+    @Autowired
+    private ProductFilterIndex productFilterIndex;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${perf.seed.random-seed}")
+    private long randomSeed;
+    @Value("${perf.seed.products}")
+    private int products;
+    @Value("${perf.seed.categories}")
+    private int categories;
+    @Value("${perf.seed.max-categories-per-product}")
+    private int maxCategoriesPerProduct;
+    @Value("${perf.seed.max-images-per-product}")
+    private int maxImagesPerProduct;
+    @Value("${perf.load.concurrency}")
+    private int concurrency;
+    @Value("${perf.load.warmup-requests}")
+    private int warmupRequests;
+    @Value("${perf.load.requests-per-scenario}")
+    private int requestsPerScenario;
+    @Value("${perf.report.path}")
+    private String reportPath;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    @Test
+    void searchCategoriesAndExportsUnderConcurrentLoad() throws Exception {
+        new PerfDataGenerator(dataSource, new PerfDataGenerator.Settings(
+                randomSeed, products, categories, maxCategoriesPerProduct, maxImagesPerProduct)).generate();
+        // Các index trong bộ nhớ build lúc khởi động (DB còn rỗng) => build lại sau khi sinh dữ liệu
+        categoryDictionary.reload();
+        productSearchIndex.rebuild();
+        productFilterIndex.rebuild();
+
+        List<Scenario> scenarios = scenarios();
+        run(scenarios, warmupRequests, null);
+
+        Map<String, Result> results = new LinkedHashMap<>();
+        scenarios.forEach(scenario -> results.put(scenario.name(), new Result()));
+        long elapsedNanos = run(scenarios, -1, results);
+
+        writeReport(scenarios, results, elapsedNanos);
+        results.forEach((name, result) -> assertEquals(0, result.errors.get(), "Failed requests in " + name));
+    }
+
+    private List<Scenario> scenarios() {
+        // Export nặng hơn nhiều => ít request hơn
+        int exportRequests = Math.max(1, requestsPerScenario / 10);
+        List<String> words = PerfDataGenerator.NAME_WORDS;
+        return List.of(
+                new Scenario("product-search-name", requestsPerScenario,
+                        i -> "/api/product/search?name=" + words.get(i % words.size()).replace(" ", "%20")
+                             + "&page=" + (i % 5) + "&size=20"),
+                new Scenario("product-search-category-facets", requestsPerScenario,
+                        i -> "/api/product/search?categoryId=" + (1 + i % categories) + "&cursor=&size=20&facets=true"),
+                new Scenario("category-list", requestsPerScenario,
+                        i -> "/api/categories?page=" + (i % 10) + "&size=20"),
+                new Scenario("product-export-xlsx", exportRequests,
+                        i -> "/api/product/export?categoryId=" + (1 + i % categories)),
+                new Scenario("category-export-xlsx", exportRequests,
+                        i -> "/api/categories/export")
+        );
+    }
+
+    /**
+     * Trộn request của mọi kịch bản (thứ tự cố định theo seed) rồi chạy trên concurrency luồng.
+     * requests < 0 => số request của từng kịch bản; results null => warmup, không ghi nhận.
+     */
+    private long run(List<Scenario> scenarios, int requests, Map<String, Result> results) throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        for (Scenario scenario : scenarios) {
+            int count = requests < 0 ? scenario.requests() : Math.min(requests, scenario.requests());
+            for (int i = 0; i < count; i++) {
+                URI uri = URI.create("http://localhost:" + port + scenario.path().apply(i));
+                Result result = results != null ? results.get(scenario.name()) : null;
+                tasks.add(() -> call(uri, result));
+            }
+        }
+        Collections.shuffle(tasks, new Random(randomSeed));
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks.size());
+            for (Runnable task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void call(URI uri, Result result) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMinutes(5))
+                .GET()
+                .build();
+        long start = System.nanoTime();
+        int status;
+        try {
+            // Đọc hết body (export stream) rồi mới tính là xong
+            status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (Exception e) {
+            log.warn("Request failed: {}", uri, e);
+            status = -1;
+        }
+        long latency = System.nanoTime() - start;
+        if (result == null) {
+            return;
+        }
+        if (status != 200) {
+            result.errors.incrementAndGet();
+        }
+        result.latencies.add(latency);
+    }
+
+    private void writeReport(List<Scenario> scenarios, Map<String, Result> results, long elapsedNanos)
+            throws Exception {
+        double elapsedSeconds = elapsedNanos / 1e9;
+
+        List<Map<String, Object>> scenarioReports = new ArrayList<>();
+        for (Scenario scenario : scenarios) {
+            Result result = results.get(scenario.name());
+            List<Long> sorted = new ArrayList<>(result.latencies);
+            Collections.sort(sorted);
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("name", scenario.name());
+            report.put("requests", sorted.size());
+            report.put("errors", result.errors.get());
+            report.put("p50Ms", percentileMillis(sorted, 0.50));
+            report.put("p90Ms", percentileMillis(sorted, 0.90));
+            report.put("p99Ms", percentileMillis(sorted, 0.99));
+            report.put("maxMs", sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1) / 1e6);
+            report.put("throughputPerSecond", sorted.size() / elapsedSeconds);
+            scenarioReports.add(report);
+            log.info("{}: {}", scenario.name(), report);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().toString());
+        report.put("dataset", Map.of(
+                "randomSeed", randomSeed,
+                "products", products,
+                "categories", categories,
+                "maxCategoriesPerProduct", maxCategoriesPerProduct,
+                "maxImagesPerProduct", maxImagesPerProduct));
+        report.put("concurrency", concurrency);
+        report.put("elapsedSeconds", elapsedSeconds);
+        report.put("scenarios", scenarioReports);
+
+        Path path = Paths.get(reportPath);
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Files.write(path, objectMapper.copy()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValueAsBytes(report));
+        log.info("Performance report written to {}", path.toAbsolutePath());
+    }
+
+    // Nearest-rank
+    private static double percentileMillis(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index)) / 1e6;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.nodotest.Performance;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Sinh dữ liệu Category / Product / Product_Category / Product_Image cho performance test.
+ * Cùng seed + cùng kích thước => luôn ra đúng 1 bộ dữ liệu (uuid ảnh cũng sinh từ seed),
+ * để các lần chạy so sánh được với nhau. Ghi bằng JDBC batch, DB mới tạo nên id chạy từ 1.
+ */
+public class PerfDataGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(PerfDataGenerator.class);
+
+    public record Settings(long randomSeed, int products, int categories,
+                           int maxCategoriesPerProduct, int maxImagesPerProduct) {
+    }
+
+    // Từ khoá tên product, test tìm kiếm chọn lại từ danh sách này
+    static final List<String> NAME_WORDS = List.of(
+            "ao", "quan", "giay", "dep", "mu", "tui", "vi", "that lung", "dong ho", "kinh",
+            "laptop", "dien thoai", "tai nghe", "ban phim", "chuot", "man hinh", "loa", "sac", "cap", "op lung"
+    );
+    private static final List<String> NAME_SUFFIXES = List.of(
+            "nam", "nu", "tre em", "the thao", "cao cap", "gia re", "mini", "pro", "plus", "2024"
+    );
+
+    private static final int BATCH_SIZE = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Settings settings;
+
+    public PerfDataGenerator(DataSource dataSource, Settings settings) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.settings = settings;
+    }
+
+    public void generate() {
+        long start = System.nanoTime();
+        Random random = new Random(settings.randomSeed());
+        LocalDate today = LocalDate.of(2024, 6, 1);
+
+        insertCategories(random, today);
+        insertProducts(random, today);
+
+        log.info("Generated {} categories, {} products in {} ms", settings.categories(), settings.products(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void insertCategories(Random random, LocalDate today) {
+        List<Object[]> rows = new ArrayList<>(settings.categories());
+        for (int i = 1; i <= settings.categories(); i++) {
+            Date created = Date.valueOf(today.minusDays(random.nextInt(730)));
+            rows.add(new Object[]{
+                    "Danh muc " + i, String.format("CAT%05d", i), "Mo ta danh muc " + i,
+                    created, created
+            });
+        }
+        jdbcTemplate.batchUpdate(
+                "insert into Category (name, category_code, description, status, created_date, modified_date, " +
+                "created_by, modified_by) values (?, ?, ?, '1', ?, ?, 'admin', 'admin')",
+                rows);
+    }
+
+    private void insertProducts(Random random, LocalDate today) {
+        List<Object[]> products = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> links = new ArrayList<>();
+        List<Object[]> images = new ArrayList<>();
+
+        for (int id = 1; id <= settings.products(); id++) {
+            Date created = Date.valueOf(today.minusDays(random.nextInt(365)));
+            String name = NAME_WORDS.get(random.nextInt(NAME_WORDS.size())) + " "
+                          + NAME_SUFFIXES.get(random.nextInt(NAME_SUFFIXES.size())) + " " + id;
+            // ~5% đã xoá mềm
+            String status = random.nextInt(20) == 0 ? "0" : "1";
+            products.add(new Object[]{
+                    name, "Mo ta " + name, 10_000d + random.nextInt(10_000_000), String.format("P%08d", id),
+                    (long) random.nextInt(1000), status, created, created
+            });
+
+            Set<Integer> categoryIds = new LinkedHashSet<>();
+            int categoryCount = 1 + random.nextInt(settings.maxCategoriesPerProduct());
+            while (categoryIds.size() < Math.min(categoryCount, settings.categories())) {
+                categoryIds.add(1 + random.nextInt(settings.categories()));
+            }
+            for (Integer categoryId : categoryIds) {
+                links.add(new Object[]{id, categoryId, created, created});
+            }
+
+            int imageCount = random.nextInt(settings.maxImagesPerProduct() + 1);
+            for (int i = 0; i < imageCount; i++) {
+                String uuid = UUID.nameUUIDFromBytes((settings.randomSeed() + ":" + id + ":" + i)
+                        .getBytes(StandardCharsets.UTF_8)).toString();
+                images.add(new Object[]{
+                        id, "image-" + i + ".jpg", "images/product/" + uuid + ".jpg", uuid, created, created
+                });
+            }
+
+            if (products.size() == BATCH_SIZE) {
+                flush(products, links, images);
+            }
+        }
+        flush(products, links, images);
+    }
+
+    // Product trước rồi mới tới bảng con (khoá ngoại)
+    private void flush(List<Object[]> products, List<Object[]> links, List<Object[]> images) {
+        if (!products.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "insert into Product (name, description, price, product_code, quantity, status, " +
+                    "created_date, modified_date, created_by, modified_by) " +
+                    "values (?, ?, ?, ?, ?, ?, ?, ?, 'admin', 'admin')",
+                    products);
+        }
+        if (!links.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "insert into Product_Category (product_id, category_id, created_date, modified_date) " +
+                    "values (?, ?, ?, ?)",
+                    links);
+        }
+        if (!images.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "insert into Product_Image (product_id, name, url, uuid, status, created_date, modified_date, " +
+                    "created_by, modified_by) values (?, ?, ?, ?, '1', ?, ?, 'admin', 'admin')",
+                    images);
+        }
+        products.clear();
+        links.clear();
+        images.clear();
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.nodotest.Repository;
+
+import com.example.nodotest.Performance.PerfDataGenerator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.MariaDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Gọi từng method của repository trên MariaDB thật (schema tạo bằng db/migration), ghi lại đúng các câu SQL
+ * Hibernate sinh ra kèm tham số (SqlCapture) rồi EXPLAIN lại từng câu với cùng tham số,
+ * fail nếu có bảng nào bị đọc full scan (type = ALL).
+ * MariaDB Connector/J mặc định gửi câu lệnh đã thay tham số, nên các điều kiện "(:x IS NULL OR ...)"
+ * với tham số null bị optimizer bỏ đi giống lúc chạy thật.
+ * Mỗi test chạy trong transaction rollback (query @Modifying không làm đổi dữ liệu mẫu); tắt cache L2 / query
+ * cache để lần gọi nào cũng xuống DB.
+ * Không kiểm tra các query cố ý đọc cả bảng (build index lúc khởi động, export không lọc, LIKE '%...%'),
+ * các query này kiểm tra trên H2 ở RepositoryIndexUsageTest (chạy trong build mặc định).
+ * mvn -Pintegration test (cần Docker)
+ */
+@Tag("integration")
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RepositoryExplainTest {
+
+    @Container
+    @ServiceConnection
+    static MariaDBContainer<?> mariadb = new MariaDBContainer<>("mariadb:11.4");
+
+    private static final SqlCapture SQL_CAPTURE = new SqlCapture();
+
+    private static final List<Long> PRODUCT_IDS = List.of(101L, 2002L, 3003L, 4004L, 5005L, 6006L, 7007L, 8008L, 9009L, 10010L);
+    private static final List<Long> CATEGORY_IDS = List.of(1L, 2L, 3L, 42L, 500L);
+    private static final String CONTENT_HASH = "e3b0c44298fc1c149afbf4c8996fb924";
+
+    @TestConfiguration
+    static class SqlCaptureConfig {
+
+        // Hibernate và JdbcTemplate đều đi qua DataSource đã bọc
+        @Bean
+        static BeanPostProcessor sqlCaptureDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? SQL_CAPTURE.wrap(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductImageRepository productImageRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryImageRepository categoryImageRepository;
+
+    private String productImageUuid;
+    private String categoryImageUuid;
+
+    @BeforeAll
+    void seed() {
+        // Đủ dữ liệu để optimizer không chọn full scan chỉ vì bảng nhỏ
+        new PerfDataGenerator(dataSource, new PerfDataGenerator.Settings(20240601L, 20_000, 2_000, 5, 3)).generate();
+        jdbcTemplate.update("insert into Category_Image (category_id, name, url, uuid, status, created_date, " +
+                            "modified_date, created_by, modified_by) " +
+                            "select id, 'image.jpg', concat('images/category/', id, '.jpg'), uuid(), '1', " +
+                            "created_date, created_date, 'admin', 'admin' from Category");
+        jdbcTemplate.execute("analyze table Product, Product_Category, Product_Image, Category, Category_Image");
+
+        productImageUuid = jdbcTemplate.queryForObject("select min(uuid) from Product_Image", String.class);
+        categoryImageUuid = jdbcTemplate.queryForObject(
+                "select uuid from Category_Image where category_id = 42", String.class);
+    }
+
+    Stream<Arguments> repositoryCalls() {
+        Date from = Date.valueOf("2024-01-01");
+        Date to = Date.valueOf("2024-01-31");
+        Date cursorDate = Date.valueOf("2024-03-01");
+        Date today = Date.valueOf("2024-06-01");
+        return Stream.of(
+                // ProductRepository
+                call("ProductRepository.findProductsAfterCursor", () -> productRepository.findProductsAfterCursor(
+                        "1", null, null, null, null, null, cursorDate, 15000L, null, PageRequest.of(0, 21))),
+                call("ProductRepository.findProductsAfterCursor (category)", () -> productRepository.findProductsAfterCursor(
+                        "1", null, null, null, null, 42L, null, null, null, PageRequest.of(0, 21))),
+                call("ProductRepository.findProductIdsByStatus (date range)", () -> productRepository.findProductIdsByStatus(
+                        "1", null, null, from, to, null, null, PageRequest.of(0, 20))),
+                call("ProductRepository.findProductIdsByStatus (ids)", () -> productRepository.findProductIdsByStatus(
+                        "1", null, null, null, null, null, PRODUCT_IDS, PageRequest.of(0, 20))),
+                call("ProductRepository.findSearchRowsByProductIds",
+                        () -> productRepository.findSearchRowsByProductIds(PRODUCT_IDS)),
+                call("ProductRepository.countByCategory (ids)",
+                        () -> productRepository.countByCategory("1", null, null, null, null, PRODUCT_IDS)),
+                call("ProductRepository.findByProductIdsAndStatus",
+                        () -> productRepository.findByProductIdsAndStatus(PRODUCT_IDS, "1", "1")),
+                call("ProductRepository.findCategoryLinksByProductIds",
+                        () -> productRepository.findCategoryLinksByProductIds(PRODUCT_IDS)),
+                call("ProductRepository.findCategoryIdsByProductId",
+                        () -> productRepository.findCategoryIdsByProductId(101L)),
+                call("ProductRepository.findIdsForBulkUpdate (category)", () -> productRepository.findIdsForBulkUpdate(
+                        "1", null, null, null, null, 42L, 5000L, PageRequest.of(0, 500))),
+                call("ProductRepository.updateStatusByIds",
+                        () -> productRepository.updateStatusByIds(PRODUCT_IDS, "1", "0", today)),
+                call("ProductRepository.findByIdAndStatus",
+                        () -> productRepository.findByIdAndStatus(101L, "1")),
+                call("ProductRepository.existsByProductCode",
+                        () -> productRepository.existsByProductCode("P00000101")),
+                // ProductImageRepository
+                call("ProductImageRepository.findByProductIdsAndStatus",
+                        () -> productImageRepository.findByProductIdsAndStatus(PRODUCT_IDS, "1")),
+                call("ProductImageRepository.findAllByProductId",
+                        () -> productImageRepository.findAllByProductId(101L)),
+                call("ProductImageRepository.updateStatusByProductIds",
+                        () -> productImageRepository.updateStatusByProductIds(PRODUCT_IDS, "0", today)),
+                call("ProductImageRepository.countByContentHashAndUrl",
+                        () -> productImageRepository.countByContentHashAndUrl(CONTENT_HASH, "images/product/a.jpg")),
+                call("ProductImageRepository.findFilesByUuidAndStatus",
+                        () -> productImageRepository.findFilesByUuidAndStatus(productImageUuid, "1")),
+                // CategoryRepository
+                call("CategoryRepository.getAllCategoriesByStatus (date range)", () -> categoryRepository.getAllCategoriesByStatus(
+                        "1", null, null, from, to, PageRequest.of(0, 10))),
+                call("CategoryRepository.findByIdAndStatus",
+                        () -> categoryRepository.findByIdAndStatus(42L, "1")),
+                call("CategoryRepository.getListIdWithStatus",
+                        () -> categoryRepository.getListIdWithStatus(CATEGORY_IDS, "1")),
+                call("CategoryRepository.existsByCategoryCode",
+                        () -> categoryRepository.existsByCategoryCode("CAT00042")),
+                // CategoryImageRepository
+                call("CategoryImageRepository.findAllByStatus",
+                        () -> categoryImageRepository.findAllByStatus("1", CATEGORY_IDS)),
+                call("CategoryImageRepository.findByCategoryIdAndStatus",
+                        () -> categoryImageRepository.findByCategoryIdAndStatus(42L, categoryImageUuid, "1")),
+                call("CategoryImageRepository.countByContentHashAndUrl",
+                        () -> categoryImageRepository.countByContentHashAndUrl(CONTENT_HASH, "images/category/a.jpg"))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryCalls")
+    void queryDoesNotFullScan(String query, Runnable repositoryCall) {
+        List<SqlCapture.Statement> statements = SQL_CAPTURE.record(repositoryCall);
+        assertFalse(statements.isEmpty(), () -> query + " did not run any SQL");
+
+        for (SqlCapture.Statement statement : statements) {
+            List<Map<String, Object>> plan = jdbcTemplate.queryForList(
+                    "explain " + statement.sql(), statement.parameters().toArray());
+
+            boolean fullScan = plan.stream().anyMatch(row -> "ALL".equalsIgnoreCase(String.valueOf(row.get("type"))));
+            assertFalse(fullScan, () -> query + " full scan:\n" + statement.sql() + "\n"
+                    + statement.parameters() + "\n"
+                    + String.join("\n", plan.stream().map(Map::toString).toList()));
+        }
+    }
+
+    private static Arguments call(String query, Runnable repositoryCall) {
+        return Arguments.of(query, repositoryCall);
+    }
+}
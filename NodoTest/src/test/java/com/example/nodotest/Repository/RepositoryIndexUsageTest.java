@@ -0,0 +1,173 @@
+package com.example.nodotest.Repository;
+
+import com.example.nodotest.Performance.PerfDataGenerator;
+import com.example.nodotest.Service.ProductFilterIndex;
+import com.example.nodotest.Service.TabularExportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chạy trong build mặc định (không cần Docker): schema tạo bằng đúng các file db/migration trên H2 (MODE=MariaDB),
+ * ghi lại SQL các query tìm kiếm LIKE, export và build index lúc khởi động thực sự gửi xuống (SqlCapture)
+ * rồi EXPLAIN lại với cùng tham số. Fail nếu bảng nào bị đọc bằng tableScan hoặc plan không dùng index của V2.
+ * H2 chỉ cho biết index có khớp điều kiện lọc / sắp xếp hay không; plan thật trên MariaDB kiểm tra ở
+ * RepositoryExplainTest (mvn -Pintegration test).
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:nodoindex;MODE=MariaDB;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RepositoryIndexUsageTest {
+
+    private static final SqlCapture SQL_CAPTURE = new SqlCapture();
+
+    private static final String PRODUCT_STATUS_CREATED = "IDX_PRODUCT_STATUS_CREATED";
+    private static final String CATEGORY_STATUS_CREATED = "IDX_CATEGORY_STATUS_CREATED";
+
+    @TestConfiguration
+    static class SqlCaptureConfig {
+
+        // Hibernate và JdbcTemplate đều đi qua DataSource đã bọc
+        @Bean
+        static BeanPostProcessor sqlCaptureDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? SQL_CAPTURE.wrap(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @BeforeAll
+    void seed() {
+        new PerfDataGenerator(dataSource, new PerfDataGenerator.Settings(20240601L, 5_000, 200, 5, 3)).generate();
+        jdbcTemplate.execute("analyze");
+    }
+
+    Stream<Arguments> repositoryCalls() {
+        Date from = Date.valueOf("2024-01-01");
+        Date to = Date.valueOf("2024-01-31");
+        TabularExportService tabularExportService = new TabularExportService(dataSource, new ObjectMapper(), 1000);
+        return Stream.of(
+                // Tìm kiếm LIKE '%...%': không dùng được index cho tên, nhưng vẫn phải đi theo status + ngày tạo
+                call("ProductRepository.findProductIdsByStatus (name)", List.of(PRODUCT_STATUS_CREATED),
+                        () -> productRepository.findProductIdsByStatus(
+                                "1", "laptop", null, null, null, null, null, PageRequest.of(0, 20))),
+                call("ProductRepository.findProductsAfterCursor (name)", List.of(PRODUCT_STATUS_CREATED),
+                        () -> productRepository.findProductsAfterCursor(
+                                "1", "laptop", null, null, null, null, null, null, null, PageRequest.of(0, 21))),
+                call("ProductRepository.countByCategory (name)", List.of(PRODUCT_STATUS_CREATED),
+                        () -> productRepository.countByCategory("1", "laptop", null, null, null, null)),
+                // Export
+                call("ProductRepository.streamAllProductsForExport (name)", List.of(PRODUCT_STATUS_CREATED), () -> {
+                    try (Stream<?> products = productRepository.streamAllProductsForExport(
+                            "1", "laptop", null, null, null, null, null)) {
+                        products.count();
+                    }
+                }),
+                call("ProductRepository.streamAllProductsForExport (date range)", List.of(PRODUCT_STATUS_CREATED), () -> {
+                    try (Stream<?> products = productRepository.streamAllProductsForExport(
+                            "1", null, null, from, to, null, null)) {
+                        products.count();
+                    }
+                }),
+                call("CategoryRepository.findAllForExport", List.of(CATEGORY_STATUS_CREATED),
+                        () -> categoryRepository.findAllForExport("1", null, null, from, to)),
+                call("TabularExportService.exportProducts (name)", List.of(PRODUCT_STATUS_CREATED),
+                        () -> export(() -> tabularExportService.exportProducts(TabularExportService.ExportFormat.CSV,
+                                "laptop", null, null, null, null, OutputStream.nullOutputStream()))),
+                call("TabularExportService.exportCategories", List.of(CATEGORY_STATUS_CREATED),
+                        () -> export(() -> tabularExportService.exportCategories(TabularExportService.ExportFormat.NDJSON,
+                                null, null, from, to, OutputStream.nullOutputStream()))),
+                // Build index lúc khởi động: đọc hết bảng nhưng chỉ qua index phủ đủ cột (không đọc dòng)
+                call("ProductFilterIndex.rebuild", List.of(PRODUCT_STATUS_CREATED),
+                        () -> new ProductFilterIndex(dataSource, 5000).rebuild()),
+                call("ProductRepository.findSearchableFields", List.of(PRODUCT_STATUS_CREATED),
+                        () -> productRepository.findSearchableFields("1"))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryCalls")
+    void queryUsesIndexes(String query, List<String> expectedIndexes, Runnable repositoryCall) {
+        List<SqlCapture.Statement> statements = SQL_CAPTURE.record(repositoryCall);
+        assertFalse(statements.isEmpty(), () -> query + " did not run any SQL");
+
+        StringBuilder plans = new StringBuilder();
+        for (SqlCapture.Statement statement : statements) {
+            String plan = jdbcTemplate.queryForList("explain " + statement.sql(), String.class,
+                    statement.parameters().toArray()).get(0);
+            plans.append(plan).append('\n');
+
+            assertFalse(plan.contains(".tableScan"), () -> query + " full scan:\n" + statement.sql() + "\n"
+                    + statement.parameters() + "\n" + plan);
+        }
+
+        String allPlans = plans.toString().toUpperCase(Locale.ROOT);
+        List<String> missing = expectedIndexes.stream().filter(index -> !allPlans.contains(index)).toList();
+        assertTrue(missing.isEmpty(), () -> query + " does not use " + missing + ":\n"
+                + statements.stream().map(SqlCapture.Statement::sql).collect(Collectors.joining("\n")) + "\n" + plans);
+    }
+
+    private interface ExportCall {
+        void run() throws IOException;
+    }
+
+    private static void export(ExportCall call) {
+        try {
+            call.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Arguments call(String query, List<String> expectedIndexes, Runnable repositoryCall) {
+        return Arguments.of(query, expectedIndexes, repositoryCall);
+    }
+}
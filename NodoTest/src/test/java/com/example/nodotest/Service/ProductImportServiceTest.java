@@ -0,0 +1,85 @@
+package com.example.nodotest.Service;
+
+import com.example.nodotest.Dto.Response.ImportReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Kiểm tra phần đọc + validate từng dòng của import (không cần DB): các dòng lỗi bị loại trước khi
+ * tới bước insert, nên JdbcTemplate không được gọi tới.
+ */
+class ProductImportServiceTest {
+
+    private static final String HEADER = "ID,Tên sản phẩm,Mã sản phẩm,Giá,Số lượng,Ngày tạo,Ngày sửa,Danh mục\n";
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private ProductImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("messages");
+        messageSource.setDefaultEncoding("UTF-8");
+        messageSource.setFallbackToSystemLocale(false);
+
+        CategoryDictionary categoryDictionary = mock(CategoryDictionary.class);
+        when(categoryDictionary.activeEntries())
+                .thenReturn(List.of(new CategoryDictionary.Entry(1L, "CATE01", "Điện thoại", "1")));
+
+        jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        importService = new ProductImportService(jdbcTemplate, mock(PlatformTransactionManager.class),
+                messageSource, mock(ProductSearchIndex.class), mock(CatalogVersion.class),
+                categoryDictionary, mock(ProductFilterIndex.class), 500);
+    }
+
+    @Test
+    void rejectsNonFinitePrices() throws Exception {
+        ImportReport report = importCsv(HEADER
+                + ",Phone A,PA01,NaN,1,,,CATE01\n"
+                + ",Phone B,PB01,Infinity,1,,,CATE01\n"
+                + ",Phone C,PC01,-Infinity,1,,,CATE01\n"
+                + ",Phone D,PD01,1e400,1,,,CATE01\n");
+
+        assertEquals(4, report.totalRows());
+        assertEquals(0, report.importedRows());
+        assertEquals(4, report.failedRows());
+        List<String> codes = report.errors().stream().map(ImportReport.RowError::productCode).toList();
+        assertEquals(List.of("PA01", "PB01", "PC01", "PD01"), codes);
+        report.errors().forEach(error -> assertEquals("Column 'Giá' must be a number", error.message()));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void reportsRowErrorsInFileOrder() throws Exception {
+        ImportReport report = importCsv(HEADER
+                + ",,P001,10,1,,,CATE01\n"
+                + ",Phone,P002,abc,1,,,CATE01\n"
+                + ",Phone,P003,-1,1,,,CATE01\n"
+                + ",Phone,P004,10,-5,,,CATE01\n"
+                + ",Phone,P005,10,1,,,UNKNOWN\n");
+
+        assertEquals(5, report.failedRows());
+        assertEquals(List.of(2, 3, 4, 5, 6),
+                report.errors().stream().map(ImportReport.RowError::rowNumber).toList());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private ImportReport importCsv(String content) throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "products.csv", "text/csv",
+                content.getBytes(StandardCharsets.UTF_8));
+        return importService.importProducts(file, Locale.ENGLISH);
+    }
+}
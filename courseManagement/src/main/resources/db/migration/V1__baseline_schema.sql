@@ -0,0 +1,61 @@
+-- Schema ban dau cua courseManagement (giong cac entity hien tai).
+-- DB da co bang tao tay thi Flyway danh dau V1 la baseline (spring.flyway.baseline-on-migrate) va bo qua file nay.
+
+CREATE TABLE IF NOT EXISTS courses (
+    id          BIGINT       NOT NULL AUTO_INCREMENT,
+    name        VARCHAR(255) NOT NULL,
+    code        VARCHAR(50)  NOT NULL,
+    description VARCHAR(500),
+    status      ENUM('1', '0') DEFAULT '1',
+    created_at  DATE DEFAULT (CURRENT_DATE),
+    updated_at  DATE DEFAULT (CURRENT_DATE),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS students (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    name       VARCHAR(255) NOT NULL,
+    gender     ENUM('1', '0') DEFAULT '1',
+    email      VARCHAR(255) NOT NULL,
+    phone      VARCHAR(20),
+    status     ENUM('1', '0') DEFAULT '1',
+    created_at DATE DEFAULT (CURRENT_DATE),
+    updated_at DATE DEFAULT (CURRENT_DATE),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS lessons (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    course_id  BIGINT       NOT NULL,
+    title      VARCHAR(255) NOT NULL,
+    status     ENUM('1', '0') DEFAULT '1',
+    created_at DATE DEFAULT (CURRENT_DATE),
+    updated_at DATE DEFAULT (CURRENT_DATE),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_lessons_course FOREIGN KEY (course_id) REFERENCES courses (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS enrollments (
+    student_id BIGINT NOT NULL,
+    course_id  BIGINT NOT NULL,
+    status     ENUM('1', '0') DEFAULT '1',
+    created_at DATE DEFAULT (CURRENT_DATE),
+    updated_at DATE DEFAULT (CURRENT_DATE),
+    PRIMARY KEY (student_id, course_id),
+    CONSTRAINT fk_enrollments_student FOREIGN KEY (student_id) REFERENCES students (id),
+    CONSTRAINT fk_enrollments_course FOREIGN KEY (course_id) REFERENCES courses (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+-- Anh / video dung chung cho student, course, lesson (object_type + object_id, khong co khoa ngoai)
+CREATE TABLE IF NOT EXISTS images (
+    id          BIGINT       NOT NULL AUTO_INCREMENT,
+    object_type ENUM('student', 'course', 'lesson') NOT NULL,
+    object_id   BIGINT       NOT NULL,
+    url         VARCHAR(500) NOT NULL,
+    public_id   VARCHAR(255),
+    file_type   ENUM('avatar', 'thumbnail', 'video') NOT NULL,
+    order_index INT DEFAULT 0,
+    status      ENUM('1', '0') DEFAULT '1',
+    created_at  DATETIME DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
@@ -0,0 +1,17 @@
+-- Index cho cac query cua repository (kiem tra bang RepositoryExplainTest).
+-- IF NOT EXISTS: DB tao tay co the da co san 1 vai index.
+
+-- Anh cua 1 / nhieu object theo loai file (ImageRepository), prefix (object_type, object_id) dung cho max(order_index)
+CREATE INDEX IF NOT EXISTS idx_images_object_file_status ON images (object_type, object_id, file_type, status);
+
+-- Hoc vien / so luong dang ky cua 1 khoa hoc; PK (student_id, course_id) da phuc vu tra theo hoc vien
+CREATE INDEX IF NOT EXISTS idx_enrollments_course_status ON enrollments (course_id, status);
+
+-- So bai hoc active cua khoa hoc, loc bai hoc theo khoa hoc
+CREATE INDEX IF NOT EXISTS idx_lessons_course_status ON lessons (course_id, status);
+
+-- Tra cuu trung lap khi tao / sua (code, email, phone, title)
+CREATE INDEX IF NOT EXISTS idx_courses_code ON courses (code);
+CREATE INDEX IF NOT EXISTS idx_students_email ON students (email);
+CREATE INDEX IF NOT EXISTS idx_students_phone ON students (phone);
+CREATE INDEX IF NOT EXISTS idx_lessons_title ON lessons (title);
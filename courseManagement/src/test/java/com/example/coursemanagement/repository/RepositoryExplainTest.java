@@ -0,0 +1,172 @@
+package com.example.coursemanagement.repository;
+
+import com.example.coursemanagement.enums.FileType;
+import com.example.coursemanagement.enums.ObjectType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.MariaDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Gọi từng method của repository trên MariaDB thật (schema tạo bằng db/migration), ghi lại đúng các câu SQL
+ * Hibernate sinh ra kèm tham số (SqlCapture) rồi EXPLAIN lại từng câu với cùng tham số,
+ * fail nếu có bảng nào bị đọc full scan (type = ALL).
+ * Connector/J gửi câu đã thay tham số, nên "(:x IS NULL OR ...)" với tham số null bị optimizer bỏ đi như lúc chạy thật.
+ * Không kiểm tra các query cố ý đọc cả bảng (findAllByStatus, tìm kiếm LIKE '%...%').
+ * mvn -Pintegration test (cần Docker)
+ */
+@Tag("integration")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RepositoryExplainTest {
+
+    @Container
+    @ServiceConnection
+    static MariaDBContainer<?> mariadb = new MariaDBContainer<>("mariadb:11.4");
+
+    private static final SqlCapture SQL_CAPTURE = new SqlCapture();
+
+    private static final List<Long> IDS = List.of(1L, 2L, 3L, 42L, 500L);
+
+    @TestConfiguration
+    static class SqlCaptureConfig {
+
+        // Hibernate và JdbcTemplate đều đi qua DataSource đã bọc
+        @Bean
+        static BeanPostProcessor sqlCaptureDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? SQL_CAPTURE.wrap(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private LessonRepository lessonRepository;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @BeforeAll
+    void seed() {
+        // Sinh dữ liệu bằng bảng seq_1_to_N (Sequence engine của MariaDB), đủ lớn để optimizer không chọn full scan
+        jdbcTemplate.update("insert into courses (name, code, description, status) " +
+                            "select concat('Khoa hoc ', seq), concat('C', lpad(seq, 5, '0')), concat('Mo ta ', seq), " +
+                            "if(seq % 20 = 0, '0', '1') from seq_1_to_200");
+        jdbcTemplate.update("insert into students (name, gender, email, phone, status) " +
+                            "select concat('Hoc vien ', seq), if(seq % 2 = 0, '0', '1'), concat('student', seq, '@example.com'), " +
+                            "concat('09', lpad(seq, 8, '0')), if(seq % 20 = 0, '0', '1') from seq_1_to_5000");
+        jdbcTemplate.update("insert into lessons (course_id, title, status) " +
+                            "select 1 + seq % 200, concat('Bai hoc ', seq), if(seq % 20 = 0, '0', '1') from seq_1_to_2000");
+        // Mỗi học viên 4 khoá khác nhau
+        jdbcTemplate.update("insert into enrollments (student_id, course_id, status) " +
+                            "select s.seq, 1 + (s.seq * 7 + k.seq * 13) % 200, if((s.seq + k.seq) % 10 = 0, '0', '1') " +
+                            "from seq_1_to_5000 s, seq_1_to_4 k");
+        jdbcTemplate.update("insert into images (object_type, object_id, url, file_type, order_index, status) " +
+                            "select 'student', seq, concat('avatar/', seq, '.jpg'), 'avatar', 0, '1' from seq_1_to_5000 " +
+                            "union all select 'course', seq, concat('thumbnail/', seq, '.jpg'), 'thumbnail', 0, '1' from seq_1_to_200 " +
+                            "union all select 'lesson', seq, concat('video/', seq, '.mp4'), 'video', seq % 3, '1' from seq_1_to_2000");
+        jdbcTemplate.execute("analyze table courses, students, lessons, enrollments, images");
+    }
+
+    Stream<Arguments> repositoryCalls() {
+        return Stream.of(
+                // CourseRepository
+                call("CourseRepository.findActiveById", () -> courseRepository.findActiveById(5L, "1")),
+                call("CourseRepository.findByCodeAndActive", () -> courseRepository.findByCodeAndActive("C00005", "1")),
+                call("CourseRepository.countActiveEnrollments", () -> courseRepository.countActiveEnrollments(5L)),
+                call("CourseRepository.countActiveLessons", () -> courseRepository.countActiveLessons(5L)),
+                call("Course.images", () -> courseRepository.findById(5L).orElseThrow().getImages().size()),
+                // EnrollmentRepository
+                call("EnrollmentRepository.findActiveByStudentAndCourse",
+                        () -> enrollmentRepository.findActiveByStudentAndCourse(10L, 84L, "1")),
+                call("EnrollmentRepository.existsByStudentAndCourseAndActive",
+                        () -> enrollmentRepository.existsByStudentAndCourseAndActive(10L, 84L, "1")),
+                call("EnrollmentRepository.findAllByStudentIdAndActive",
+                        () -> enrollmentRepository.findAllByStudentIdAndActive(10L, "1")),
+                call("EnrollmentRepository.findStudentsByCourseIdAndStatus",
+                        () -> enrollmentRepository.findStudentsByCourseIdAndStatus(5L, "1")),
+                // ImageRepository
+                call("ImageRepository.findAllActiveByObjectAndType", () -> imageRepository.findAllActiveByObjectAndType(
+                        ObjectType.student, IDS, FileType.avatar, "1")),
+                call("ImageRepository.findActiveByObjectAndType", () -> imageRepository.findActiveByObjectAndType(
+                        ObjectType.lesson, 42L, FileType.video, "1")),
+                call("ImageRepository.findAllActiveByObject",
+                        () -> imageRepository.findAllActiveByObject(ObjectType.course, 5L, "1")),
+                call("ImageRepository.findMaxOrderIndex",
+                        () -> imageRepository.findMaxOrderIndex(ObjectType.lesson, 42L, FileType.video)),
+                call("ImageRepository.findAllByIdInAndStatus", () -> imageRepository.findAllByIdInAndStatus(IDS, "1")),
+                // LessonRepository
+                call("LessonRepository.findActiveById", () -> lessonRepository.findActiveById(42L, "1")),
+                call("LessonRepository.findByTitleAndStatus", () -> lessonRepository.findByTitleAndStatus("Bai hoc 42", "1")),
+                call("LessonRepository.searchLesson (course)",
+                        () -> lessonRepository.searchLesson(5L, "1", null, PageRequest.of(0, 10))),
+                // StudentRepository
+                call("StudentRepository.findActiveById", () -> studentRepository.findActiveById(10L, "1")),
+                call("StudentRepository.findByEmailAndActive",
+                        () -> studentRepository.findByEmailAndActive("student10@example.com", "1")),
+                call("StudentRepository.existsByEmail", () -> studentRepository.existsByEmail("student10@example.com")),
+                call("StudentRepository.findByPhoneAndActive", () -> studentRepository.findByPhoneAndActive("0900000010", "1")),
+                call("StudentRepository.existsByPhone", () -> studentRepository.existsByPhone("0900000010")),
+                call("StudentRepository.countActiveEnrollments", () -> studentRepository.countActiveEnrollments(10L))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryCalls")
+    void queryDoesNotFullScan(String query, Runnable repositoryCall) {
+        List<SqlCapture.Statement> statements = SQL_CAPTURE.record(repositoryCall);
+        assertFalse(statements.isEmpty(), () -> query + " did not run any SQL");
+
+        for (SqlCapture.Statement statement : statements) {
+            List<Map<String, Object>> plan = jdbcTemplate.queryForList(
+                    "explain " + statement.sql(), statement.parameters().toArray());
+
+            boolean fullScan = plan.stream().anyMatch(row -> "ALL".equalsIgnoreCase(String.valueOf(row.get("type"))));
+            assertFalse(fullScan, () -> query + " full scan:\n" + statement.sql() + "\n"
+                    + statement.parameters() + "\n"
+                    + String.join("\n", plan.stream().map(Map::toString).toList()));
+        }
+    }
+
+    private static Arguments call(String query, Runnable repositoryCall) {
+        return Arguments.of(query, repositoryCall);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.coursemanagement.repository;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Bọc DataSource để ghi lại các câu PreparedStatement (SQL + tham số theo thứ tự) mà Hibernate thực sự
+ * gửi xuống driver trong lúc record(...) chạy, dùng cho RepositoryExplainTest.
+ */
+final class SqlCapture {
+
+    record Statement(String sql, List<Object> parameters) {
+    }
+
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "addBatch");
+
+    private final List<Statement> statements = new CopyOnWriteArrayList<>();
+    private volatile boolean recording = false;
+
+    List<Statement> record(Runnable call) {
+        statements.clear();
+        recording = true;
+        try {
+            call.run();
+        } finally {
+            recording = false;
+        }
+        return List.copyOf(statements);
+    }
+
+    DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, (method, args, result) ->
+                result instanceof Connection connection && method.getName().equals("getConnection")
+                        ? wrapConnection(connection)
+                        : result);
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, connection, (method, args, result) ->
+                result instanceof PreparedStatement statement && method.getName().equals("prepareStatement")
+                        ? wrapStatement(statement, (String) args[0])
+                        : result);
+    }
+
+    private PreparedStatement wrapStatement(PreparedStatement statement, String sql) {
+        // index (từ 1) -> giá trị; setNull => null
+        Map<Integer, Object> parameters = new TreeMap<>();
+        InvocationHandler handler = (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                parameters.put(index, name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (recording && EXECUTE_METHODS.contains(name) && (args == null || args.length == 0)) {
+                statements.add(new Statement(sql, new ArrayList<>(parameters.values())));
+            }
+            return invoke(statement, method, args);
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(
+                SqlCapture.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, handler);
+    }
+
+    private interface ResultWrapper {
+        Object wrap(Method method, Object[] args, Object result);
+    }
+
+    private static <T> T proxy(Class<T> type, T target, ResultWrapper wrapper) {
+        InvocationHandler handler = (proxy, method, args) -> wrapper.wrap(method, args, invoke(target, method, args));
+        return type.cast(Proxy.newProxyInstance(SqlCapture.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}